@@ -0,0 +1,40 @@
+package chess;
+
+/*
+ * Positions the benchmarks run on, set up from FEN.
+ */
+final class BenchmarkPositions {
+	static final String START = "start";
+	static final String OPENING = "opening";
+	static final String MIDDLEGAME = "middlegame";
+	static final String SIMPLIFIED = "simplified";
+
+	// Italian game after black wins back the pawn
+	private static final String OPENING_FEN = "r1bqk2r/pppp1ppp/2n5/8/1bBPn3/2N2N2/PP3PPP/R1BQK2R w KQkq - 0 8";
+
+	// Queen's gambit declined, every piece still on the board
+	private static final String MIDDLEGAME_FEN = "r1b1k2r/pp1nq1p1/2p1p2p/5p2/2PPp3/4P3/PP1N1PPP/2RQKB1R w Kkq - 0 12";
+
+	// Queens and several minor pieces traded off early
+	private static final String SIMPLIFIED_FEN = "r3kb1r/p1p1pppp/2p5/3n4/3P4/6B1/PPP2PPP/RN2K2R b KQkq - 4 10";
+
+	private BenchmarkPositions() {
+	}
+
+	// Returns a board in the named position, with no moves made so it reverses no further
+	static Board create(String name) {
+		switch (name) {
+
+		case START:
+			return new Board();
+		case OPENING:
+			return Board.fromFen(OPENING_FEN);
+		case MIDDLEGAME:
+			return Board.fromFen(MIDDLEGAME_FEN);
+		case SIMPLIFIED:
+			return Board.fromFen(SIMPLIFIED_FEN);
+		default:
+			throw new IllegalArgumentException("No benchmark position called " + name);
+		}
+	}
+}
@@ -0,0 +1,108 @@
+package chess;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * Move generation, making and reversing moves, check detection and evaluation on each benchmark position
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BoardBenchmark {
+	@Param({ BenchmarkPositions.START, BenchmarkPositions.OPENING, BenchmarkPositions.MIDDLEGAME,
+			BenchmarkPositions.SIMPLIFIED })
+	public String position;
+
+	private Board board;
+	private Team team;
+	private List<Move> legalMoves;
+	private int[] packedMoves;
+	private int packedCount;
+	private PawnTable pawnTable;
+
+	@Setup
+	public void setup() {
+		board = BenchmarkPositions.create(position);
+		team = board.getSideToMove();
+		legalMoves = board.generatePossibleMovesForTeam(team);
+		packedMoves = new int[PackedMove.MAX_MOVES];
+		packedCount = board.generateMoves(team, packedMoves);
+		pawnTable = new PawnTable(1 << 10);
+	}
+
+	@Benchmark
+	public List<Move> generatePossibleMovesForTeam() {
+		return board.generatePossibleMovesForTeam(team);
+	}
+
+	@Benchmark
+	public int generateMoves() {
+		return board.generateMoves(team, packedMoves);
+	}
+
+	@Benchmark
+	public int generateCaptures() {
+		return board.generateCaptures(team, packedMoves);
+	}
+
+	// Makes and reverses every legal move through the public Move API, which checks each one is legal
+	@Benchmark
+	public int makeAndReverseMoves() {
+		int made = 0;
+
+		for (Move move : legalMoves)
+			if (board.makeMove(move)) {
+				board.reverseLastMove();
+				made++;
+			}
+
+		return made;
+	}
+
+	// Makes and reverses every legal move as the search does
+	@Benchmark
+	public long makeAndReversePackedMoves() {
+		long hashes = 0;
+
+		for (int i = 0; i < packedCount; i++) {
+			board.makeMove(packedMoves[i]);
+			hashes += board.getHash();
+			board.reverseLastMove();
+		}
+
+		return hashes;
+	}
+
+	@Benchmark
+	public boolean isChecked() {
+		return board.isChecked(team);
+	}
+
+	// Evaluation without a pawn table, as the GUI side calls it
+	@Benchmark
+	public int generateHeuristicValue() {
+		return board.generateHeuristicValue(team);
+	}
+
+	// Evaluation with the pawn structure cached, as the search calls it
+	@Benchmark
+	public int generateHeuristicValueCached() {
+		return board.generateHeuristicValue(team, pawnTable);
+	}
+}
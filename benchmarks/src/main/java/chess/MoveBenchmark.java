@@ -0,0 +1,46 @@
+package chess;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/*
+ * Move.drawPath over every legal move in each benchmark position
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MoveBenchmark {
+	@Param({ BenchmarkPositions.START, BenchmarkPositions.OPENING, BenchmarkPositions.MIDDLEGAME,
+			BenchmarkPositions.SIMPLIFIED })
+	public String position;
+
+	private List<Move> moves;
+
+	@Setup
+	public void setup() {
+		Board board = BenchmarkPositions.create(position);
+		moves = board.generatePossibleMovesForTeam(board.getSideToMove());
+	}
+
+	@Benchmark
+	public void drawPath(Blackhole blackhole) {
+		for (Move move : moves)
+			blackhole.consume(move.drawPath());
+	}
+}
@@ -0,0 +1,25 @@
+package chess;
+
+/*
+ * Compares fixed depth searches with and without move ordering, on positions reached by the AI playing itself.
+ * Usage: MoveOrderingBenchmark [depth]
+ */
+public class MoveOrderingBenchmark {
+
+	public static void main(String[] args) {
+		int depth = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+
+		SelfPlayHarness.forEachPosition((board, team) -> {
+			for (boolean ordering : new boolean[] { false, true }) {
+				MinimaxAI ai = new MinimaxAI(depth, team);
+				ai.setMoveOrdering(ordering);
+
+				long start = System.nanoTime();
+				ai.pickMove(board);
+				double millis = SelfPlayHarness.millisSince(start);
+
+				System.out.printf("  %-11s %8.1f ms  %s%n", ordering ? "ordered" : "unordered", millis, ai.getStatistics());
+			}
+		});
+	}
+}
@@ -0,0 +1,34 @@
+package chess;
+
+/*
+ * Reports how parallel search scales: time to reach a fixed depth and nodes per second for 1, 2, 4...
+ * threads up to the number of cores. Usage: ParallelSearchBenchmark [depth] [max threads]
+ */
+public class ParallelSearchBenchmark {
+
+	public static void main(String[] args) {
+		int depth = args.length > 0 ? Integer.parseInt(args[0]) : 6;
+		int maxThreads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+		double baseline = 0;
+
+		// Warm up the JIT so the single thread figure isn't penalised
+		new MinimaxAI(depth - 1, Team.WHITE).pickMove(new Board());
+
+		System.out.println("threads   time (ms)        nodes     nodes/sec   speedup");
+
+		for (int threads = 1; threads <= maxThreads; threads *= 2) {
+			MinimaxAI ai = new MinimaxAI(depth, Team.WHITE);
+			ai.setThreads(threads);
+
+			long start = System.nanoTime();
+			ai.pickMove(new Board());
+			double millis = SelfPlayHarness.millisSince(start);
+
+			if (threads == 1)
+				baseline = millis;
+
+			System.out.printf("%7d %11.1f %12d %13.0f %9.2f%n", threads, millis, ai.getNodes(),
+					ai.getNodes() / millis * 1000, baseline / millis);
+		}
+	}
+}
@@ -0,0 +1,57 @@
+package chess;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * MinimaxAI.pickMove to a fixed depth on each benchmark position. The transposition table is cleared before
+ * every search so each one starts from scratch, rather than finding the last search's results. It's kept small
+ * so clearing it doesn't take long next to the search
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SearchBenchmark {
+	@Param({ BenchmarkPositions.START, BenchmarkPositions.OPENING, BenchmarkPositions.MIDDLEGAME,
+			BenchmarkPositions.SIMPLIFIED })
+	public String position;
+
+	@Param({ "4", "6" })
+	public int depth;
+
+	private Board board;
+	private MinimaxAI ai;
+
+	private static final int HASH_MEGABYTES = 1;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		board = BenchmarkPositions.create(position);
+		ai = new MinimaxAI(depth, board.getSideToMove(), HASH_MEGABYTES);
+	}
+
+	@Setup(Level.Invocation)
+	public void clearTable() {
+		ai.getTranspositionTable().clear();
+	}
+
+	@Benchmark
+	public Move pickMove() {
+		return ai.pickMove(board);
+	}
+}
@@ -0,0 +1,37 @@
+package chess;
+
+/*
+ * Compares fixed depth searches with each selective search technique turned off in turn, on positions reached by
+ * the AI playing itself. Usage: SelectiveSearchBenchmark [depth]
+ */
+public class SelectiveSearchBenchmark {
+	private static final String[] CONFIGURATIONS = { "none", "all", "no null move", "no reductions", "no futility",
+			"no razoring" };
+
+	public static void main(String[] args) {
+		int depth = args.length > 0 ? Integer.parseInt(args[0]) : 6;
+
+		SelfPlayHarness.forEachPosition((board, team) -> {
+			for (int configuration = 0; configuration < CONFIGURATIONS.length; configuration++) {
+				MinimaxAI ai = new MinimaxAI(depth, team);
+				configure(ai, configuration);
+
+				long start = System.nanoTime();
+				SearchResult result = ai.search(board);
+				double millis = SelfPlayHarness.millisSince(start);
+
+				System.out.printf("  %-14s %8.1f ms  score %5d  best %-14s %s%n", CONFIGURATIONS[configuration], millis,
+						result.getScore(), result.getBestMove(), ai.getStatistics());
+			}
+		});
+	}
+
+	private static void configure(MinimaxAI ai, int configuration) {
+		boolean all = configuration != 0;
+
+		ai.setNullMovePruning(all && configuration != 2);
+		ai.setLateMoveReductions(all && configuration != 3);
+		ai.setFutilityPruning(all && configuration != 4);
+		ai.setRazoring(all && configuration != 5);
+	}
+}
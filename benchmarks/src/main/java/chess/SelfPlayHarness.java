@@ -0,0 +1,45 @@
+package chess;
+
+import java.util.function.BiConsumer;
+
+/*
+ * Shared by the benchmarks run from the command line rather than through JMH, which compare whole searches:
+ * the positions they search, reached by the AI playing itself, and timing each search.
+ * Run them from the benchmarks jar, for example java -cp target/benchmarks.jar chess.MoveOrderingBenchmark 5
+ */
+final class SelfPlayHarness {
+	private static final int POSITIONS = 4;
+
+	// Moves played from one position to the next, and how deep the AI looks to play them
+	private static final int MOVES_BETWEEN = 6;
+	private static final int PLAYING_DEPTH = 3;
+
+	private SelfPlayHarness() {
+	}
+
+	// Passes each position and the team to move in it to the benchmark, after printing how far into the game it is.
+	// Stops early if the game ends
+	static void forEachPosition(BiConsumer<Board, Team> benchmark) {
+		Board board = new Board();
+		Team team = Team.WHITE;
+
+		for (int position = 0; position < POSITIONS; position++) {
+			System.out.println("Position after " + position * MOVES_BETWEEN + " moves");
+			benchmark.accept(board, team);
+
+			// Play on to reach the next position
+			for (int i = 0; i < MOVES_BETWEEN; i++) {
+				Move move = new MinimaxAI(PLAYING_DEPTH, team).pickMove(board);
+				if (move == null)
+					return;
+
+				board.makeMove(move);
+				team = Team.otherTeam(team);
+			}
+		}
+	}
+
+	static double millisSince(long start) {
+		return (System.nanoTime() - start) / 1e6;
+	}
+}
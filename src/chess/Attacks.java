@@ -0,0 +1,193 @@
+package chess;
+
+/*
+ * Attack tables built once at startup. Knights, kings and pawns use a table per square,
+ * sliding pieces use magic bitboards so their attacks are a mask, a multiply and a lookup.
+ */
+final class Attacks {
+	private static final long[] KNIGHT = new long[64];
+	private static final long[] KING = new long[64];
+	private static final long[][] PAWN = new long[2][64];
+
+	// Squares strictly between two squares on the same row, column or diagonal, empty otherwise
+	private static final long[][] BETWEEN = new long[64][64];
+
+	// Every square on the row, column or diagonal running through two squares, empty if they aren't aligned
+	private static final long[][] LINE = new long[64][64];
+
+	private static final Magic[] ROOK_MAGICS = new Magic[64];
+	private static final Magic[] BISHOP_MAGICS = new Magic[64];
+
+	// Found offline by trying sparse random numbers until one indexed every blocker arrangement without a collision.
+	// Searching for them at startup took most of a second, so they're kept here instead
+	private static final long[] ROOK_MAGIC_NUMBERS = {
+			0x1080004008801020L, 0x0840092002C03000L, 0x1900200010400900L, 0x0880100008000480L,
+			0x4200100420080200L, 0x8100020100080400L, 0x0200040110886200L, 0x0200008040220411L,
+			0x0404800084400220L, 0x0000401000402000L, 0x0086001081220440L, 0x0408800800100280L,
+			0x000A001201040820L, 0x8848800200840080L, 0x4001000100040200L, 0x0442000102105084L,
+			0x9080010020804100L, 0x0040404000201009L, 0x0000808010002009L, 0x2200090021D00100L,
+			0x0008008008040080L, 0x0004004002010040L, 0x0011040008015042L, 0x00000A0001768104L,
+			0x0000800080204009L, 0x2010004140002001L, 0x9800200280100080L, 0x1000100080080080L,
+			0x0050500500080100L, 0x0000020080040080L, 0x0C10010400420810L, 0x1040008200005104L,
+			0x01808240088004A0L, 0x0882804004802000L, 0x0880402001001100L, 0x2000210409001000L,
+			0x2000480131001500L, 0x0000800400800200L, 0x000002380C001003L, 0x4600084882000431L,
+			0x0080002000504000L, 0x0300500020004002L, 0x0040408200220011L, 0x0010040008004040L,
+			0x0000080004008080L, 0x0010040002008080L, 0x2012004881020004L, 0x8300842444820011L,
+			0x0088403882010200L, 0x0820400080210100L, 0x0110910040A00300L, 0x0801100280080480L,
+			0x0242009008200600L, 0x1002000489500200L, 0x0040800200010080L, 0x0091800041000080L,
+			0x0000209300488001L, 0x04C1002414824001L, 0x020020000B001041L, 0x7000100004200901L,
+			0x8002002004100802L, 0x30010002084C0007L, 0x0888221800813004L, 0x4000002840840112L };
+
+	private static final long[] BISHOP_MAGIC_NUMBERS = {
+			0x20C0090901061081L, 0x0024040094030104L, 0x8210810200290200L, 0x0011040484620000L,
+			0x0081104002221000L, 0x0009012011001350L, 0x0081010802400380L, 0x0000420210010408L,
+			0x0008105002280050L, 0x0001028484040044L, 0x2A00880810408804L, 0x7020022282000100L,
+			0x0084040420100A50L, 0x000401010840E000L, 0x2020020210420888L, 0x0008084202012010L,
+			0x2010400810018800L, 0x0445122008020840L, 0x0804100808002008L, 0x0008002104110100L,
+			0x0061005820080800L, 0x2001000200820100L, 0x480C210084010800L, 0x3004442500480420L,
+			0x1010102240048100L, 0x00182009084220A3L, 0x8803090A10004205L, 0x0208080040202020L,
+			0x000C044084010040L, 0x00A1010002004106L, 0x6008210020640202L, 0x1600902112860801L,
+			0x00042008C1220200L, 0x010C042002440140L, 0x5022080200040820L, 0x0402004042940100L,
+			0x0860108400008020L, 0x000C080022021000L, 0x0264080652822100L, 0x4005031221010401L,
+			0x0004502410008400L, 0x000500B010A20400L, 0x0415094050080800L, 0x080000201800A104L,
+			0x4022A80304000110L, 0x4012140802028020L, 0x40200104010100A0L, 0x12810806008B0C41L,
+			0x0020441008080000L, 0x2002120084045420L, 0x0704020062080002L, 0x0000001084040001L,
+			0x0322200891240200L, 0xF040200210024800L, 0x0140824832008042L, 0x000210020A004602L,
+			0x0083042805141020L, 0x002C12009A011000L, 0x0041A00044140400L, 0x00004004020A0202L,
+			0x0000140010020210L, 0x2864160811012200L, 0x2060080841082A17L, 0xA010041108003100L };
+
+	static {
+		for (int square = 0; square < 64; square++) {
+			KNIGHT[square] = Bitboards.knightAttacks(square);
+			KING[square] = Bitboards.kingAttacks(square);
+			PAWN[0][square] = Bitboards.pawnAttacks(0, square);
+			PAWN[1][square] = Bitboards.pawnAttacks(1, square);
+		}
+
+		for (int square = 0; square < 64; square++) {
+			ROOK_MAGICS[square] = new Magic(square, true, ROOK_MAGIC_NUMBERS[square]);
+			BISHOP_MAGICS[square] = new Magic(square, false, BISHOP_MAGIC_NUMBERS[square]);
+		}
+
+		for (int from = 0; from < 64; from++)
+			for (int to = 0; to < 64; to++) {
+				BETWEEN[from][to] = buildBetween(from, to);
+				LINE[from][to] = buildLine(from, to);
+			}
+	}
+
+	private Attacks() {
+	}
+
+	static long knight(int square) {
+		return KNIGHT[square];
+	}
+
+	static long king(int square) {
+		return KING[square];
+	}
+
+	static long pawn(int team, int square) {
+		return PAWN[team][square];
+	}
+
+	static long rook(int square, long occupied) {
+		return ROOK_MAGICS[square].attacks(occupied);
+	}
+
+	static long bishop(int square, long occupied) {
+		return BISHOP_MAGICS[square].attacks(occupied);
+	}
+
+	static long queen(int square, long occupied) {
+		return rook(square, occupied) | bishop(square, occupied);
+	}
+
+	static long between(int from, int to) {
+		return BETWEEN[from][to];
+	}
+
+	static long line(int from, int to) {
+		return LINE[from][to];
+	}
+
+	private static long buildBetween(int from, int to) {
+		long target = Bitboards.bit(to);
+
+		if ((Bitboards.rookAttacks(from, 0) & target) != 0)
+			return Bitboards.rookAttacks(from, target) & Bitboards.rookAttacks(to, Bitboards.bit(from));
+		if ((Bitboards.bishopAttacks(from, 0) & target) != 0)
+			return Bitboards.bishopAttacks(from, target) & Bitboards.bishopAttacks(to, Bitboards.bit(from));
+
+		return 0;
+	}
+
+	private static long buildLine(int from, int to) {
+		long ends = Bitboards.bit(from) | Bitboards.bit(to);
+
+		if (from == to)
+			return 0;
+		if ((Bitboards.rookAttacks(from, 0) & Bitboards.bit(to)) != 0)
+			return (Bitboards.rookAttacks(from, 0) & Bitboards.rookAttacks(to, 0)) | ends;
+		if ((Bitboards.bishopAttacks(from, 0) & Bitboards.bit(to)) != 0)
+			return (Bitboards.bishopAttacks(from, 0) & Bitboards.bishopAttacks(to, 0)) | ends;
+
+		return 0;
+	}
+
+	// Maps every arrangement of blockers relevant to one square onto its precomputed attack set
+	private static final class Magic {
+		private final long mask;
+		private final long magic;
+		private final int shift;
+		private final long[] table;
+
+		Magic(int square, boolean rook, long magicNumber) {
+			mask = relevantBlockers(square, rook);
+			magic = magicNumber;
+			shift = 64 - Long.bitCount(mask);
+			table = new long[1 << Long.bitCount(mask)];
+
+			boolean[] used = new boolean[table.length];
+
+			// Enumerate every subset of the mask and store its attacks
+			long subset = 0;
+			do {
+				long attacks = rook ? Bitboards.rookAttacks(square, subset) : Bitboards.bishopAttacks(square, subset);
+				int index = (int) ((subset * magic) >>> shift);
+
+				if (used[index] && table[index] != attacks)
+					throw new AssertionError("Magic number for square " + square + " maps two attack sets together");
+
+				used[index] = true;
+				table[index] = attacks;
+				subset = (subset - mask) & mask;
+			} while (subset != 0);
+		}
+
+		long attacks(long occupied) {
+			return table[(int) (((occupied & mask) * magic) >>> shift)];
+		}
+
+		// Squares whose occupancy changes the attacks, edges excluded since nothing lies beyond them
+		private static long relevantBlockers(int square, boolean rook) {
+			if (!rook)
+				return Bitboards.bishopAttacks(square, 0) & ~Bitboards.EDGES;
+
+			int row = Bitboards.row(square);
+			int column = Bitboards.column(square);
+			long mask = 0;
+
+			for (int r = row + 1; r < 7; r++)
+				mask |= Bitboards.bit(Bitboards.square(r, column));
+			for (int r = row - 1; r > 0; r--)
+				mask |= Bitboards.bit(Bitboards.square(r, column));
+			for (int c = column + 1; c < 7; c++)
+				mask |= Bitboards.bit(Bitboards.square(row, c));
+			for (int c = column - 1; c > 0; c--)
+				mask |= Bitboards.bit(Bitboards.square(row, c));
+
+			return mask;
+		}
+	}
+}
@@ -1,11 +1,8 @@
 package chess;
 
-import java.util.ArrayList;
-import java.util.List;
-
 public final class Bishop extends Piece {
 
-	public Bishop(Team t) {
+	Bishop(Team t) {
 		super(t);
 	}
 
@@ -16,18 +13,4 @@ public final class Bishop extends Piece {
 		else
 			return "b";
 	}
-
-	@Override
-	public List<Move> generateMoveList(Position start) {
-		List<Move> ret = new ArrayList<>();
-
-		for (int i = 1; i < 8; i++) {
-			addPositionToMoveList(ret, start, new Position(start.row() - i, start.column() - i));
-			addPositionToMoveList(ret, start, new Position(start.row() - i, start.column() + i));
-			addPositionToMoveList(ret, start, new Position(start.row() + i, start.column() - i));
-			addPositionToMoveList(ret, start, new Position(start.row() + i, start.column() + i));
-		}
-
-		return ret;
-	}
 }
\ No newline at end of file
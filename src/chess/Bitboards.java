@@ -0,0 +1,109 @@
+package chess;
+
+/*
+ * Helpers for working with 64 bit boards. Square 0 is row 0, column 0 and square 63 is row 7, column 7.
+ * Attacks here are worked out by walking the board, Attacks builds its lookup tables from them.
+ */
+final class Bitboards {
+	// Squares on the outer rows and columns of the board
+	static final long EDGES = 0xFF818181818181FFL;
+
+	private static final int[][] KNIGHT_OFFSETS = { { -2, -1 }, { -1, -2 }, { -1, 2 }, { -2, 1 }, { 1, -2 }, { 2, -1 },
+			{ 1, 2 }, { 2, 1 } };
+	private static final int[][] KING_OFFSETS = { { -1, -1 }, { -1, 0 }, { -1, 1 }, { 0, -1 }, { 0, 1 }, { 1, -1 },
+			{ 1, 1 }, { 1, 0 } };
+	private static final int[][] ROOK_DIRECTIONS = { { -1, 0 }, { 0, -1 }, { 0, 1 }, { 1, 0 } };
+	private static final int[][] BISHOP_DIRECTIONS = { { -1, -1 }, { -1, 1 }, { 1, -1 }, { 1, 1 } };
+
+	private Bitboards() {
+	}
+
+	static int square(int row, int column) {
+		return row * 8 + column;
+	}
+
+	static int row(int square) {
+		return square >>> 3;
+	}
+
+	static int column(int square) {
+		return square & 7;
+	}
+
+	static long bit(int square) {
+		return 1L << square;
+	}
+
+	static long knightAttacks(int square) {
+		return stepAttacks(square, KNIGHT_OFFSETS);
+	}
+
+	static long kingAttacks(int square) {
+		return stepAttacks(square, KING_OFFSETS);
+	}
+
+	// Squares a pawn of the given team attacks diagonally
+	static long pawnAttacks(int team, int square) {
+		int row = row(square) + (team == 0 ? 1 : -1);
+		int column = column(square);
+		long attacks = 0;
+
+		if (row >= 0 && row < 8) {
+			if (column > 0)
+				attacks |= bit(square(row, column - 1));
+			if (column < 7)
+				attacks |= bit(square(row, column + 1));
+		}
+
+		return attacks;
+	}
+
+	// Sliding attacks stop at, and include, the first occupied square in each direction
+	static long rookAttacks(int square, long occupied) {
+		return slidingAttacks(square, occupied, ROOK_DIRECTIONS);
+	}
+
+	static long bishopAttacks(int square, long occupied) {
+		return slidingAttacks(square, occupied, BISHOP_DIRECTIONS);
+	}
+
+	static long queenAttacks(int square, long occupied) {
+		return rookAttacks(square, occupied) | bishopAttacks(square, occupied);
+	}
+
+	private static long stepAttacks(int square, int[][] offsets) {
+		long attacks = 0;
+
+		for (int[] offset : offsets) {
+			int row = row(square) + offset[0];
+			int column = column(square) + offset[1];
+
+			if (row >= 0 && row < 8 && column >= 0 && column < 8)
+				attacks |= bit(square(row, column));
+		}
+
+		return attacks;
+	}
+
+	private static long slidingAttacks(int square, long occupied, int[][] directions) {
+		long attacks = 0;
+
+		for (int[] direction : directions) {
+			int row = row(square) + direction[0];
+			int column = column(square) + direction[1];
+
+			while (row >= 0 && row < 8 && column >= 0 && column < 8) {
+				long bit = bit(square(row, column));
+				attacks |= bit;
+
+				if ((occupied & bit) != 0)
+					break;
+
+				row += direction[0];
+				column += direction[1];
+			}
+		}
+
+		return attacks;
+	}
+}
@@ -2,54 +2,169 @@ package chess;
 
 import java.io.Serializable;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
-import java.util.Stack;
+
+import static chess.PieceType.*;
 
 public class Board implements Serializable {
-	private final Piece[][] board;
+	// One bitboard per team and piece type, indexed by team ordinal then piece type
+	private final long[][] pieces;
+
+	// Squares occupied by each team
+	private final long[] occupancy;
+
+	// Piece code on each square, so looking up a single square doesn't need to search the bitboards
+	private final int[] squares;
+
+	// Team whose turn it is, flipped by every move made or reversed
+	private int sideToMove;
+
+	// Zobrist hash of the position, updated a piece at a time as pieces are put down and picked up
+	private long hash;
+
+	// Zobrist hash of the pawns alone, used to cache pawn structure scores
+	private long pawnHash;
+
+	// Running midgame and endgame evaluation from white's side, and how much material other than pawns is left,
+	// all updated a piece at a time like the hash
+	private int midgameScore;
+	private int endgameScore;
+	private int phase;
+
+	// Castling rights still held, the en passant target square plus one or 0, and moves since the last capture or
+	// pawn move, packed into one int so it's saved and restored with each move as it is. The en passant square is
+	// only set when a pawn could capture there, so positions that can't be told apart share a hash
+	private int state;
+
+	// Plies played before the first move in the history, which the full move number is counted from
+	private int startPly;
+
+	// History of packed moves made, used to reverse them. Grows on demand so making moves doesn't allocate.
+	// Alongside each move are the hashes and the state above from before it, restored when it's reversed, and the
+	// hashes also show when a position repeats
+	private int[] moveHistory;
+	private long[] hashHistory;
+	private long[] pawnHashHistory;
+	private int[] stateHistory;
+	private int historySize;
+
+	private static final int EN_PASSANT_SHIFT = 4;
+	private static final int CLOCK_SHIFT = 11;
+	private static final int CLOCK_UNIT = 1 << CLOCK_SHIFT;
+
+	// Rows a pawn is promoted on
+	private static final long PROMOTION_ROWS = 0xFF000000000000FFL;
+
+	// Castling rights bits
+	static final int WHITE_KINGSIDE = 1;
+	static final int WHITE_QUEENSIDE = 2;
+	static final int BLACK_KINGSIDE = 4;
+	static final int BLACK_QUEENSIDE = 8;
+	static final int ALL_CASTLING = 15;
+
+	// Castling rights kept when a piece moves from or to each square, so a king or rook moving or a rook being
+	// captured gives up the rights it's needed for
+	private static final int[] CASTLING_MASKS = new int[64];
+
+	static {
+		Arrays.fill(CASTLING_MASKS, ALL_CASTLING);
+
+		CASTLING_MASKS[4] = ~(WHITE_KINGSIDE | WHITE_QUEENSIDE);
+		CASTLING_MASKS[7] = ~WHITE_KINGSIDE;
+		CASTLING_MASKS[0] = ~WHITE_QUEENSIDE;
+		CASTLING_MASKS[60] = ~(BLACK_KINGSIDE | BLACK_QUEENSIDE);
+		CASTLING_MASKS[63] = ~BLACK_KINGSIDE;
+		CASTLING_MASKS[56] = ~BLACK_QUEENSIDE;
+	}
 
-	// Cache is used to save moves in case you want to reverse them.
-	private final Stack<Piece> deletedPieceCache;
-	private final Stack<Move> moveCache;
-	private final Stack<Position> pawnToQueenConversionCache;
+	// Squares between white's king and rook on each side, which have to be empty to castle, black's are 56 higher
+	private static final long KINGSIDE_PATH = 0x60L;
+	private static final long QUEENSIDE_PATH = 0x0EL;
 
-	// Maps a pieces string representation onto it's relative value
-	private final Map<String, Integer> heuristicMap;
+	// Moves made before a position is a draw by the fifty move rule, counted in plies
+	static final int FIFTY_MOVE_PLIES = 100;
 
 	public Board() {
-		board = new Piece[8][8];
-		deletedPieceCache = new Stack<>();
-		moveCache = new Stack<>();
-		pawnToQueenConversionCache = new Stack<>();
-		heuristicMap = new HashMap<>();
+		pieces = new long[2][PieceType.COUNT];
+		occupancy = new long[2];
+		squares = new int[64];
+		moveHistory = new int[256];
+		hashHistory = new long[256];
+		pawnHashHistory = new long[256];
+		stateHistory = new int[256];
 
-		buildHeuristicMapping();
 		addPieces(0, 1, Team.WHITE);
 		addPieces(7, 6, Team.BLACK);
+		setState(0, ALL_CASTLING, -1, 0, 1);
+	}
+
+	// Creates a board in the position described by a FEN string
+	public static Board fromFen(String fen) {
+		Board board = new Board();
+		board.loadFen(fen);
+
+		return board;
+	}
+
+	// Replaces this board's position with one described by a FEN string, without allocating,
+	// so one board can be reused to load many positions. Throws IllegalArgumentException for an invalid string,
+	// leaving the board in no particular position
+	public void loadFen(CharSequence fen) {
+		Fen.load(this, fen);
+	}
+
+	public String toFen() {
+		return Fen.write(this);
+	}
+
+	// Copies another board, so each search thread can make moves on a board of its own
+	public Board(Board other) {
+		pieces = new long[2][];
+		pieces[0] = other.pieces[0].clone();
+		pieces[1] = other.pieces[1].clone();
+		occupancy = other.occupancy.clone();
+		squares = other.squares.clone();
+		moveHistory = other.moveHistory.clone();
+		hashHistory = other.hashHistory.clone();
+		pawnHashHistory = other.pawnHashHistory.clone();
+		stateHistory = other.stateHistory.clone();
+		historySize = other.historySize;
+		sideToMove = other.sideToMove;
+		hash = other.hash;
+		pawnHash = other.pawnHash;
+		midgameScore = other.midgameScore;
+		endgameScore = other.endgameScore;
+		phase = other.phase;
+		state = other.state;
+		startPly = other.startPly;
 	}
 
 	public void reverseLastMove() {
-		Move move = moveCache.pop();
-		Position start = move.start();
-		Position end = move.destination();
+		int move = moveHistory[--historySize];
+		int start = PackedMove.start(move);
+		int end = PackedMove.destination(move);
+		int team = teamOf(squares[end]);
 
-		board[start.row()][start.column()] = pieceAt(end);
-		board[end.row()][end.column()] = deletedPieceCache.pop();
+		lift(end);
+		place(start, code(team, PackedMove.moved(move)));
 
-		checkForReversePawnReplacement();
+		if (PackedMove.isCapture(move))
+			place(PackedMove.capturedSquare(move), code(1 - team, PackedMove.captured(move)));
+
+		if (PackedMove.isCastling(move))
+			moveRook(end, true);
+
+		sideToMove = team;
+		restoreState();
 	}
 
 	// Returns true if last move was successful, false if unsuccessful
 	public boolean makeMove(Move move) {
-		Position start = move.start();
-		Position end = move.destination();
-		Team team = pieceAt(start).getTeam();
+		int packed = encodeMove(move);
+		int team = teamOf(squares[PackedMove.start(packed)]);
 
-		cacheMove(move, end);
-		movePiece(start, end);
-		checkForPawnReplacement(start, end);
+		makeMove(packed);
 
 		if (isChecked(team)) {
 			reverseLastMove();
@@ -59,257 +174,705 @@ public class Board implements Serializable {
 		return true;
 	}
 
-	private void movePiece(Position start, Position end) {
-		board[end.row()][end.column()] = pieceAt(start);
-		board[start.row()][start.column()] = null;
+	// Makes a move produced by generateMoves, which only produces moves that don't leave the king checked
+	void makeMove(int move) {
+		int start = PackedMove.start(move);
+		int end = PackedMove.destination(move);
+		int moved = PackedMove.moved(move);
+		int team = teamOf(squares[start]);
+
+		cacheMove(move);
+
+		// An en passant square only lasts a move. Its key is 0 when there isn't one, so this doesn't need to check
+		hash ^= Zobrist.enPassantKey(getEnPassantSquare());
+
+		if (PackedMove.isCapture(move))
+			removePiece(PackedMove.capturedSquare(move));
+
+		removePiece(start);
+
+		if (PackedMove.promotion(move) != NONE)
+			putPiece(end, code(team, PackedMove.promotion(move)));
+		else
+			putPiece(end, code(team, moved));
+
+		if (PackedMove.isCastling(move))
+			moveRook(end, false);
+
+		// The key for the rights given up, which is 0 when none are
+		int rights = state & CASTLING_MASKS[start] & CASTLING_MASKS[end] & ALL_CASTLING;
+		hash ^= Zobrist.castlingKey((state ^ rights) & ALL_CASTLING);
+
+		if (moved == PAWN || PackedMove.isCapture(move))
+			state = rights;
+		else
+			state = rights | (state & ~(CLOCK_UNIT - 1)) + CLOCK_UNIT;
+
+		// After a double step, an opposing pawn beside the destination can take the pawn as if it moved one
+		if (moved == PAWN && (start ^ end) == 16)
+			setEnPassantSquare(team, (start + end) >>> 1);
+
+		sideToMove = 1 - team;
+		hash ^= Zobrist.SIDE_KEY;
+	}
+
+	// Moves the rook a king castling onto the square takes with it, from its corner to the king's other side, or back
+	// again when reversing
+	private void moveRook(int kingEnd, boolean reversing) {
+		boolean kingside = Bitboards.column(kingEnd) == 6;
+		int corner = (kingEnd & 56) | (kingside ? 7 : 0);
+		int beside = (kingEnd & 56) | (kingside ? 5 : 3);
+		int rook = squares[reversing ? beside : corner];
+
+		// Reversing puts back the hashes from before the move, so they aren't updated
+		if (reversing) {
+			lift(beside);
+			place(corner, rook);
+		} else {
+			removePiece(corner);
+			putPiece(beside, rook);
+		}
+	}
+
+	// Passes the turn without moving, used by the search to see if a position is good enough even after doing nothing.
+	// The pass is recorded like a move, and starts the move clock again so repetitions aren't looked for across it
+	void makeNullMove() {
+		cacheMove(PackedMove.NONE);
+		hash ^= Zobrist.enPassantKey(getEnPassantSquare());
+		state &= ALL_CASTLING;
+		sideToMove = 1 - sideToMove;
+		hash ^= Zobrist.SIDE_KEY;
+	}
+
+	void reverseNullMove() {
+		historySize--;
+		sideToMove = 1 - sideToMove;
+		restoreState();
+	}
+
+	// Records the move with the hash and state it's made from
+	private void cacheMove(int move) {
+		if (historySize == moveHistory.length) {
+			moveHistory = Arrays.copyOf(moveHistory, historySize * 2);
+			hashHistory = Arrays.copyOf(hashHistory, historySize * 2);
+			pawnHashHistory = Arrays.copyOf(pawnHashHistory, historySize * 2);
+			stateHistory = Arrays.copyOf(stateHistory, historySize * 2);
+		}
+
+		moveHistory[historySize] = move;
+		hashHistory[historySize] = hash;
+		pawnHashHistory[historySize] = pawnHash;
+		stateHistory[historySize++] = state;
+	}
+
+	// Puts back the hashes and state from before the move just taken off the history
+	private void restoreState() {
+		hash = hashHistory[historySize];
+		pawnHash = pawnHashHistory[historySize];
+		state = stateHistory[historySize];
+	}
+
+	// Sets the en passant square behind a pawn that stepped two squares, if an opposing pawn could take it there.
+	// There mustn't be one already. Rarely can one, so it's worked out without a branch the compiler wouldn't expect
+	private void setEnPassantSquare(int team, int square) {
+		long capturers = Attacks.pawn(team, square) & pieces[1 - team][PAWN];
+		int stored = (square + 1) * (int) ((capturers | -capturers) >>> 63);
+
+		state |= stored << EN_PASSANT_SHIFT;
+		hash ^= Zobrist.enPassantKey(stored - 1);
+	}
+
+	// Packs a move, promoting to a queen if a pawn reaches the end and the move doesn't say what to promote to
+	private int encodeMove(Move move) {
+		int start = toSquare(move.start());
+		int end = toSquare(move.destination());
+		int moved = typeOf(squares[start]);
+
+		if (moved == KING && Math.abs(end - start) == 2)
+			return createMove(start, end, KING) | PackedMove.CASTLING;
+
+		if (moved == PAWN && end == getEnPassantSquare() && Bitboards.column(start) != Bitboards.column(end))
+			return PackedMove.create(start, end, PAWN, PAWN, NONE) | PackedMove.EN_PASSANT;
+
+		if (moved == PAWN && move.promotion() != NONE && (Bitboards.row(end) == 0 || Bitboards.row(end) == 7))
+			return PackedMove.create(start, end, PAWN, typeOf(squares[end]), move.promotion());
+
+		return createMove(start, end, moved);
 	}
 
-	private void cacheMove(Move move, Position end) {
-		deletedPieceCache.push(pieceAt(end));
-		moveCache.push(move);
+	private int createMove(int start, int end, int moved) {
+		int promotion = NONE;
+
+		if (moved == PAWN && (Bitboards.row(end) == 0 || Bitboards.row(end) == 7))
+			promotion = QUEEN;
+
+		return PackedMove.create(start, end, moved, typeOf(squares[end]), promotion);
 	}
 
 	public GameStatus getGameStatus(Team team) {
-		for (Move move : generatePossibleMovesForTeam(team)) {
-			if (makeMove(move)) {
-				reverseLastMove();
-				return GameStatus.INPLAY;
-			}
+		if (generateMoves(team, new int[PackedMove.MAX_MOVES]) == 0) {
+			// No moves can be made, game is either in checkmate or stalemate
+			if (isChecked(team.ordinal()))
+				return GameStatus.CHECKMATE;
+			else
+				return GameStatus.STALEMATE;
 		}
 
-		// No moves can be made, game is either in checkmate or stalemate
-		if (isChecked(team))
-			return GameStatus.CHECKMATE;
-		else
-			return GameStatus.STALEMATE;
+		if (countRepetitions() >= 2)
+			return GameStatus.REPETITION;
+		if (getHalfmoveClock() >= FIFTY_MOVE_PLIES)
+			return GameStatus.FIFTY_MOVES;
+		if (hasInsufficientMaterial())
+			return GameStatus.INSUFFICIENT_MATERIAL;
+
+		return GameStatus.INPLAY;
+	}
+
+	// Whether the position was already reached since the last capture or pawn move, with the same side to move.
+	// The search counts a single repetition as a draw, since if it's worth repeating once it's worth repeating again
+	boolean isRepetition() {
+		for (int i = historySize - 4; i >= historySize - getHalfmoveClock() && i >= 0; i -= 2)
+			if (hashHistory[i] == hash)
+				return true;
+
+		return false;
+	}
+
+	// How many times the position was reached before, as far back as the moves that can be reversed go
+	int countRepetitions() {
+		int count = 0;
+
+		for (int i = historySize - 4; i >= historySize - getHalfmoveClock() && i >= 0; i -= 2)
+			if (hashHistory[i] == hash)
+				count++;
+
+		return count;
+	}
+
+	// Neither side can mate with any series of moves: kings alone, or against a single knight or bishop
+	boolean hasInsufficientMaterial() {
+		long heavy = 0;
+		for (int team = 0; team < 2; team++)
+			heavy |= pieces[team][PAWN] | pieces[team][ROOK] | pieces[team][QUEEN];
+
+		long minor = pieces[0][KNIGHT] | pieces[0][BISHOP] | pieces[1][KNIGHT] | pieces[1][BISHOP];
+
+		return heavy == 0 && Long.bitCount(minor) <= 1;
 	}
 
 	// Returns true if a move doesn't break the rules
 	public boolean isValidMove(Move move, Team team) {
-		if (pieceAt(move.start()) == null)
+		if (!move.start().isOnBoard() || !move.destination().isOnBoard())
 			return false;
 
-		if (pieceAt(move.start()).getTeam() != team)
+		int start = toSquare(move.start());
+		int end = toSquare(move.destination());
+
+		if (squares[start] == NONE || teamOf(squares[start]) != team.ordinal())
 			return false;
 
-		List<Move> possibleMoves = generatePossibleMovesForPiece(move.start());
-		return possibleMoves.contains(move);
+		if ((generateDestinations(start) & Bitboards.bit(end)) != 0)
+			return true;
+
+		// Castling and en passant, which generateDestinations leaves out, are only valid if they're legal
+		int[] moves = new int[PackedMove.MAX_MOVES];
+		int count = generateMoves(team, moves);
+
+		for (int i = 0; i < count; i++)
+			if (PackedMove.start(moves[i]) == start && PackedMove.destination(moves[i]) == end)
+				return true;
+
+		return false;
 	}
 
 	public List<Move> generatePossibleMovesForTeam(Team team) {
-		List<Move> ret = new ArrayList<>();
+		int[] moves = new int[PackedMove.MAX_MOVES];
+		int count = generateMoves(team, moves);
+		List<Move> ret = new ArrayList<>(count);
 
-		for (Position pos : getPositionsOfPiecesForTeam(team))
-			ret.addAll(generatePossibleMovesForPiece(pos));
+		for (int i = 0; i < count; i++)
+			ret.add(PackedMove.toMove(moves[i]));
 
 		return ret;
 	}
 
-	// Adds piece objects to board for each team
+	// Writes every legal move a team can make into the buffer and returns how many there are
+	int generateMoves(Team team, int[] moves) {
+		return generateMoves(team, moves, ~0L, true);
+	}
+
+	// Same as generateMoves, but only captures and pawn promotions, and only promotions to a queen since the others
+	// are almost never better
+	int generateCaptures(Team team, int[] moves) {
+		return generateMoves(team, moves, occupancy[1 - team.ordinal()], false);
+	}
+
+	// Generates legal moves landing on the wanted squares, plus any pawn promotions. Castling is only generated when
+	// quiet moves are wanted, en passant whenever captures are
+	private int generateMoves(Team team, int[] moves, long wanted, boolean underpromotions) {
+		int us = team.ordinal();
+		int them = 1 - us;
+		long occupied = occupancy[0] | occupancy[1];
+		int king = Long.numberOfTrailingZeros(pieces[us][KING]);
+		long checkers = generateAttackers(king, them, occupied);
+		int count = 0;
+
+		// The king can't step onto an attacked square, including squares it currently shields from a slider
+		long kingDestinations = Attacks.king(king) & ~occupancy[us] & wanted;
+		while (kingDestinations != 0) {
+			int end = Long.numberOfTrailingZeros(kingDestinations);
+
+			if (generateAttackers(end, them, occupied ^ Bitboards.bit(king)) == 0)
+				moves[count++] = createMove(king, end, KING);
+
+			kingDestinations &= kingDestinations - 1;
+		}
+
+		// In double check only the king can move
+		if (Long.bitCount(checkers) > 1)
+			return count;
+
+		if (checkers == 0 && wanted == ~0L)
+			count = generateCastling(us, king, occupied, moves, count);
+
+		// In check, any other piece has to capture the checking piece or block it
+		long targets = ~0L;
+		if (checkers != 0)
+			targets = checkers | Attacks.between(king, Long.numberOfTrailingZeros(checkers));
+
+		long pinned = generatePinnedPieces(us, king, occupied);
+		long remaining = occupancy[us] & ~pieces[us][KING];
+
+		while (remaining != 0) {
+			int start = Long.numberOfTrailingZeros(remaining);
+			int moved = typeOf(squares[start]);
+			long destinations = generateDestinations(start) & targets;
+
+			if (moved == PAWN)
+				destinations &= wanted | PROMOTION_ROWS;
+			else
+				destinations &= wanted;
+
+			// A pinned piece can only move along the line between its king and the pinning piece
+			if ((pinned & Bitboards.bit(start)) != 0)
+				destinations &= Attacks.line(king, start);
+
+			if (moved == PAWN && (destinations & PROMOTION_ROWS) != 0)
+				count = generatePromotions(start, destinations, moves, count, underpromotions);
+			else
+				while (destinations != 0) {
+					moves[count++] = createMove(start, Long.numberOfTrailingZeros(destinations), moved);
+					destinations &= destinations - 1;
+				}
+
+			remaining &= remaining - 1;
+		}
+
+		if (getEnPassantSquare() >= 0)
+			count = generateEnPassant(us, king, occupied, moves, count);
+
+		return count;
+	}
+
+	// A move for each piece a pawn can promote to, most valuable first
+	private int generatePromotions(int start, long destinations, int[] moves, int count, boolean underpromotions) {
+		int last = underpromotions ? KNIGHT : QUEEN;
+
+		for (; destinations != 0; destinations &= destinations - 1) {
+			int end = Long.numberOfTrailingZeros(destinations);
+
+			for (int promotion = QUEEN; promotion >= last; promotion--)
+				moves[count++] = PackedMove.create(start, end, PAWN, typeOf(squares[end]), promotion);
+		}
+
+		return count;
+	}
+
+	// Castling moves, for a king not in check. The squares between king and rook must be empty, and the king can't
+	// pass through or land on an attacked square. The empty squares are checked before the rights, since they rule
+	// castling out in most positions and don't depend on where the king is
+	private int generateCastling(int team, int king, long occupied, int[] moves, int count) {
+		int row = team * 56;
+
+		if ((occupied & KINGSIDE_PATH << row) == 0 && (state & WHITE_KINGSIDE << 2 * team) != 0
+				&& !isSquareAttacked(king + 1, 1 - team, occupied) && !isSquareAttacked(king + 2, 1 - team, occupied))
+			moves[count++] = createMove(king, king + 2, KING) | PackedMove.CASTLING;
+
+		if ((occupied & QUEENSIDE_PATH << row) == 0 && (state & WHITE_QUEENSIDE << 2 * team) != 0
+				&& !isSquareAttacked(king - 1, 1 - team, occupied) && !isSquareAttacked(king - 2, 1 - team, occupied))
+			moves[count++] = createMove(king, king - 2, KING) | PackedMove.CASTLING;
+
+		return count;
+	}
+
+	// En passant captures onto the en passant square. Rare enough to check each one by taking both pawns off the
+	// board and looking for anything attacking the king, which also covers the pawns being pinned along a row
+	private int generateEnPassant(int team, int king, long occupied, int[] moves, int count) {
+		int enPassantSquare = getEnPassantSquare();
+		int captured = enPassantSquare ^ 8;
+
+		for (long capturers = Attacks.pawn(1 - team, enPassantSquare) & pieces[team][PAWN]; capturers != 0;
+				capturers &= capturers - 1) {
+			int start = Long.numberOfTrailingZeros(capturers);
+			long after = occupied ^ Bitboards.bit(start) ^ Bitboards.bit(captured) | Bitboards.bit(enPassantSquare);
+
+			if ((generateAttackers(king, 1 - team, after) & ~Bitboards.bit(captured)) == 0)
+				moves[count++] = PackedMove.create(start, enPassantSquare, PAWN, PAWN, NONE) | PackedMove.EN_PASSANT;
+		}
+
+		return count;
+	}
+
+	// Adds pieces to board for each team
 	private void addPieces(int backRow, int frontRow, Team team) {
-		board[backRow][0] = new Rook(team);
-		board[backRow][7] = new Rook(team);
-		board[backRow][1] = new Knight(team);
-		board[backRow][6] = new Knight(team);
-		board[backRow][2] = new Bishop(team);
-		board[backRow][5] = new Bishop(team);
-		board[backRow][3] = new Queen(team);
-		board[backRow][4] = new King(team);
+		int t = team.ordinal();
+
+		putPiece(Bitboards.square(backRow, 0), code(t, ROOK));
+		putPiece(Bitboards.square(backRow, 7), code(t, ROOK));
+		putPiece(Bitboards.square(backRow, 1), code(t, KNIGHT));
+		putPiece(Bitboards.square(backRow, 6), code(t, KNIGHT));
+		putPiece(Bitboards.square(backRow, 2), code(t, BISHOP));
+		putPiece(Bitboards.square(backRow, 5), code(t, BISHOP));
+		putPiece(Bitboards.square(backRow, 3), code(t, QUEEN));
+		putPiece(Bitboards.square(backRow, 4), code(t, KING));
 
 		for (int i = 0; i < 8; i++)
-			board[frontRow][i] = new Pawn(team);
+			putPiece(Bitboards.square(frontRow, i), code(t, PAWN));
 	}
 
-	private boolean isChecked(Team team) {
-		Position kingsPosition = getKingPosition(team);
-		Team otherTeam = Team.otherTeam(team);
+	// Empties the board ready for a position to be set up a piece at a time, white to move
+	void clear() {
+		for (long[] teamPieces : pieces)
+			Arrays.fill(teamPieces, 0);
+
+		Arrays.fill(occupancy, 0);
+		Arrays.fill(squares, NONE);
+		sideToMove = 0;
+		hash = 0;
+		pawnHash = 0;
+		midgameScore = 0;
+		endgameScore = 0;
+		phase = 0;
+		state = 0;
+		startPly = 0;
+		historySize = 0;
+	}
 
-		for (Position position : getPositionsOfPiecesForTeam(otherTeam)) {
-			Move move = new Move(position, kingsPosition);
-			if (isValidMove(move, otherTeam))
-				return true;
+	// Sets who moves next and the state FEN records beside the pieces, on a board set up from clear.
+	// Castling rights without the king and rook on their first squares are dropped, and so is an en passant square
+	// no pawn can take on, so the board only has to trust what it can check
+	void setState(int sideToMove, int castlingRights, int enPassantSquare, int halfmoveClock, int fullmoveNumber) {
+		if (sideToMove != this.sideToMove)
+			hash ^= Zobrist.SIDE_KEY;
+
+		for (int right = 0; right < 4; right++) {
+			int row = right < 2 ? 0 : 7;
+			int team = right < 2 ? 0 : 1;
+			int corner = Bitboards.square(row, right % 2 == 0 ? 7 : 0);
+
+			if (squares[Bitboards.square(row, 4)] != code(team, KING) || squares[corner] != code(team, ROOK))
+				castlingRights &= ~(1 << right);
 		}
 
-		return false;
+		hash ^= Zobrist.castlingKey(getCastlingRights()) ^ Zobrist.castlingKey(castlingRights);
+		hash ^= Zobrist.enPassantKey(getEnPassantSquare());
+
+		this.sideToMove = sideToMove;
+		state = castlingRights | halfmoveClock << CLOCK_SHIFT;
+		startPly = 2 * (fullmoveNumber - 1) + sideToMove - historySize;
+
+		if (enPassantSquare >= 0 && Bitboards.row(enPassantSquare) == (sideToMove == 0 ? 5 : 2)
+				&& squares[enPassantSquare] == NONE && squares[enPassantSquare ^ 8] == code(1 - sideToMove, PAWN))
+			setEnPassantSquare(1 - sideToMove, enPassantSquare);
+	}
+
+	// Why a position set up from clear is one the move generator can't handle, or null if it isn't: anything other
+	// than one king each, pawns on a back row, or the side that just moved left in check
+	String findImpossibility() {
+		for (int team = 0; team < 2; team++) {
+			if (Long.bitCount(pieces[team][KING]) != 1)
+				return "each side must have exactly one king";
+			if ((pieces[team][PAWN] & PROMOTION_ROWS) != 0)
+				return "pawns can't be on the first or last row";
+		}
+
+		if (isChecked(1 - sideToMove))
+			return "the side not to move is in check";
+
+		return null;
+	}
+
+	void putPiece(int square, int code) {
+		place(square, code);
+		hash ^= Zobrist.pieceKey(teamOf(code), typeOf(code), square);
+
+		if (typeOf(code) == PAWN)
+			pawnHash ^= Zobrist.pieceKey(teamOf(code), PAWN, square);
+	}
+
+	private void removePiece(int square) {
+		int code = squares[square];
+
+		lift(square);
+		hash ^= Zobrist.pieceKey(teamOf(code), typeOf(code), square);
+
+		if (typeOf(code) == PAWN)
+			pawnHash ^= Zobrist.pieceKey(teamOf(code), PAWN, square);
 	}
 
-	// If pawn reached the end, replace with queen
-	private void checkForPawnReplacement(Position start, Position end) {
-		if (pieceAt(end) instanceof Pawn && (end.row() == 0 || end.row() == 7)) {
-			replacePawnWithQueen(end);
-			pawnToQueenConversionCache.push(start);
-		} else
-			pawnToQueenConversionCache.push(null);
+	// Puts a piece down without touching the hashes, for reversing a move, which puts back the hashes from before it
+	private void place(int square, int code) {
+		long bit = Bitboards.bit(square);
+
+		pieces[teamOf(code)][typeOf(code)] |= bit;
+		occupancy[teamOf(code)] |= bit;
+		squares[square] = code;
+
+		midgameScore += Evaluation.midgame(code, square);
+		endgameScore += Evaluation.endgame(code, square);
+		phase += Evaluation.phaseWeight(typeOf(code));
 	}
 
-	private void replacePawnWithQueen(Position end) {
-		board[end.row()][end.column()] = new Queen(pieceAt(end).getTeam());
+	private void lift(int square) {
+		int code = squares[square];
+		long bit = Bitboards.bit(square);
+
+		pieces[teamOf(code)][typeOf(code)] &= ~bit;
+		occupancy[teamOf(code)] &= ~bit;
+		squares[square] = NONE;
+
+		midgameScore -= Evaluation.midgame(code, square);
+		endgameScore -= Evaluation.endgame(code, square);
+		phase -= Evaluation.phaseWeight(typeOf(code));
 	}
 
-	// Uses cache to reverse a move where a pawn has turned into a queen
-	private void checkForReversePawnReplacement() {
-		Position pos = pawnToQueenConversionCache.pop();
-		if (pos != null)
-			board[pos.row()][pos.column()] = new Pawn(pieceAt(pos).getTeam());
+	boolean isChecked(Team team) {
+		return isChecked(team.ordinal());
 	}
 
-	private List<Move> generatePossibleMovesForPiece(Position start) {
-		Piece piece = pieceAt(start);
+	private boolean isChecked(int team) {
+		int king = Long.numberOfTrailingZeros(pieces[team][KING]);
+
+		return isSquareAttacked(king, 1 - team, occupancy[0] | occupancy[1]);
+	}
 
-		if (piece instanceof Pawn)
-			updatePawnSurroundings(start);
+	// Works outward from the square, looking for an attacker of each kind where that kind would attack from
+	private boolean isSquareAttacked(int square, int team, long occupied) {
+		long[] attackers = pieces[team];
 
-		return removeInvalidMoves(piece.generateMoveList(start));
+		if ((Attacks.knight(square) & attackers[KNIGHT]) != 0)
+			return true;
+		if ((Attacks.pawn(1 - team, square) & attackers[PAWN]) != 0)
+			return true;
+		if ((Attacks.king(square) & attackers[KING]) != 0)
+			return true;
+		if ((Attacks.bishop(square, occupied) & (attackers[BISHOP] | attackers[QUEEN])) != 0)
+			return true;
+
+		return (Attacks.rook(square, occupied) & (attackers[ROOK] | attackers[QUEEN])) != 0;
 	}
 
-	// Tells a pawn object where its surrounding pieces are so it can make a move
-	private void updatePawnSurroundings(Position pawnPosition) {
-		boolean leftTake = false, rightTake = false;
-		boolean isPieceInFront = false, isPieceTwoInFront = false;
+	// Returns every piece of the given team attacking a square
+	private long generateAttackers(int square, int team, long occupied) {
+		long[] attackers = pieces[team];
 
-		Pawn pawn = (Pawn) pieceAt(pawnPosition);
-		int directionModifier = getDirectionModifier(pawn.getTeam());
-		Position pos;
+		return (Attacks.knight(square) & attackers[KNIGHT])
+				| (Attacks.pawn(1 - team, square) & attackers[PAWN])
+				| (Attacks.king(square) & attackers[KING])
+				| (Attacks.bishop(square, occupied) & (attackers[BISHOP] | attackers[QUEEN]))
+				| (Attacks.rook(square, occupied) & (attackers[ROOK] | attackers[QUEEN]));
+	}
 
-		// True if an opposing teams piece is at top left of pawn
-		pos = new Position(pawnPosition.row() + directionModifier, pawnPosition.column() + 1);
-		if (pieceAt(pos) != null && pieceAt(pos).getTeam() != pawn.getTeam())
-			rightTake = true;
+	// Returns the team's pieces that are the only piece between their king and an opposing slider
+	private long generatePinnedPieces(int team, int king, long occupied) {
+		long[] enemies = pieces[1 - team];
+		long pinned = 0;
+		long snipers = (Attacks.rook(king, 0) & (enemies[ROOK] | enemies[QUEEN]))
+				| (Attacks.bishop(king, 0) & (enemies[BISHOP] | enemies[QUEEN]));
 
-		// True if an opposing teams piece is at top right of pawn
-		pos = new Position(pawnPosition.row() + directionModifier, pawnPosition.column() - 1);
-		if (pieceAt(pos) != null && pieceAt(pos).getTeam() != pawn.getTeam())
-			leftTake = true;
+		while (snipers != 0) {
+			long blockers = Attacks.between(king, Long.numberOfTrailingZeros(snipers)) & occupied;
 
-		// True if a piece is in front of the pawn
-		pos = new Position(pawnPosition.row() + directionModifier, pawnPosition.column());
-		if (pieceAt(pos) != null)
-			isPieceInFront = true;
+			if (Long.bitCount(blockers) == 1)
+				pinned |= blockers & occupancy[team];
 
-		// True if no piece lies 2 spots ahead of pawn
-		pos = new Position(pawnPosition.row() + (directionModifier * 2), pawnPosition.column());
-		if (pieceAt(pos) != null)
-			isPieceTwoInFront = true;
+			snipers &= snipers - 1;
+		}
 
-		pawn.setSurroundingPositions(leftTake, rightTake, isPieceInFront, isPieceTwoInFront);
+		return pinned;
+	}
+
+	// Attacks for every piece type except pawns, whose attacks depend on team
+	private long generateAttacks(int type, int square, long occupied) {
+		switch (type) {
+
+		case KNIGHT:
+			return Attacks.knight(square);
+		case BISHOP:
+			return Attacks.bishop(square, occupied);
+		case ROOK:
+			return Attacks.rook(square, occupied);
+		case QUEEN:
+			return Attacks.queen(square, occupied);
+		case KING:
+			return Attacks.king(square);
+		default:
+			throw new AssertionError("Piece type doesn't seem to match with any supported types");
+		}
+	}
+
+	// Returns every square the piece on a square can move to, ignoring whether it leaves its king checked
+	private long generateDestinations(int start) {
+		int code = squares[start];
+		int team = teamOf(code);
+		long occupied = occupancy[0] | occupancy[1];
+
+		if (typeOf(code) == PAWN)
+			return generatePawnDestinations(team, start, occupied);
+
+		return generateAttacks(typeOf(code), start, occupied) & ~occupancy[team];
+	}
+
+	private long generatePawnDestinations(int team, int start, long occupied) {
+		int directionModifier = getDirectionModifier(team);
+		int originalRow = team == 0 ? 1 : 6;
+		long ret = Attacks.pawn(team, start) & occupancy[1 - team];
+		int oneInFront = start + directionModifier * 8;
+
+		// If there's no piece blocking it, can move forward
+		if (oneInFront >= 0 && oneInFront < 64 && (occupied & Bitboards.bit(oneInFront)) == 0) {
+			ret |= Bitboards.bit(oneInFront);
+
+			// If pawn is still in original position, can move forward 2 spots
+			int twoInFront = oneInFront + directionModifier * 8;
+			if (Bitboards.row(start) == originalRow && (occupied & Bitboards.bit(twoInFront)) == 0)
+				ret |= Bitboards.bit(twoInFront);
+		}
+
+		return ret;
 	}
 
 	// Returns the direction where a pawn should move given the team it's in
-	private int getDirectionModifier(Team team) {
-		if (team == Team.WHITE)
+	private int getDirectionModifier(int team) {
+		if (team == 0)
 			return 1;
 		else
 			return -1;
 	}
 
-	// Filters out any moves that don't follow the rules of the game
-	private List<Move> removeInvalidMoves(List<Move> moves) {
-		List<Move> ret = new ArrayList<>();
+	private static int toSquare(Position position) {
+		return Bitboards.square(position.row(), position.column());
+	}
+
+	private static Position toPosition(int square) {
+		return new Position(Bitboards.row(square), Bitboards.column(square));
+	}
 
-		for (Move move : moves)
-			if (isClearPath(move) && isValidDestination(move))
-				ret.add(move);
+	boolean hasPiecesOtherThanPawns(Team team) {
+		long[] teamPieces = pieces[team.ordinal()];
 
-		return ret;
+		return (teamPieces[KNIGHT] | teamPieces[BISHOP] | teamPieces[ROOK] | teamPieces[QUEEN]) != 0;
 	}
 
-	// Returns true if no other pieces lie in a pieces path when moving
-	private boolean isClearPath(Move move) {
-		List<Position> path = move.drawPath();
+	long getOccupied() {
+		return occupancy[0] | occupancy[1];
+	}
 
-		for (Position position : path)
-			if (pieceAt(position) != null)
-				return false;
+	long getOccupancy(Team team) {
+		return occupancy[team.ordinal()];
+	}
 
-		return true;
+	long getPawnHash() {
+		return pawnHash;
 	}
 
-	private Position getKingPosition(Team team) {
-		for (int row = 0; row < 8; row++) {
-			for (int column = 0; column < 8; column++) {
-				Position pos = new Position(row, column);
-				if (pieceAt(pos) != null && (pieceAt(pos) instanceof King) && pieceAt(pos).getTeam() == team)
-					return pos;
-			}
-		}
+	// Identifies the position and the team to move, two boards with the same pieces and turn share a hash
+	long getHash() {
+		return hash;
+	}
 
-		throw new AssertionError("King not found");
+	int getCastlingRights() {
+		return state & ALL_CASTLING;
 	}
 
-	// Returns List of all positions of a given teams pieces that can make a move
-	private List<Position> getPositionsOfPiecesForTeam(Team team) {
-		List<Position> ret = new ArrayList<>();
+	// -1 if there isn't one
+	int getEnPassantSquare() {
+		return (state >>> EN_PASSANT_SHIFT & 127) - 1;
+	}
 
-		for (int i = 0; i < 8; i++)
-			for (int j = 0; j < 8; j++) {
-				Position pos = new Position(i, j);
-				if (pieceAt(pos) != null && pieceAt(pos).getTeam() == team)
-					if (generatePossibleMovesForPiece(pos).size() > 0)
-						ret.add(pos);
-			}
+	int getHalfmoveClock() {
+		return state >>> CLOCK_SHIFT;
+	}
 
-		return ret;
+	int getFullmoveNumber() {
+		return (startPly + historySize) / 2 + 1;
 	}
 
-	// Returns true if the destination isn't occupied by a pieces own team
-	private boolean isValidDestination(Move move) {
-		Position start = move.start();
-		Position end = move.destination();
-		Team team = pieceAt(start).getTeam();
+	// Piece code on a square, 0 if it's empty
+	int squareCode(int square) {
+		return squares[square];
+	}
 
-		if (pieceAt(end) != null && pieceAt(end).getTeam() == team)
-			return false;
+	long getPieces(int team, int type) {
+		return pieces[team][type];
+	}
 
-		return true;
+	Team getSideToMove() {
+		return sideToMove == 0 ? Team.WHITE : Team.BLACK;
 	}
 
 	public Piece pieceAt(Position position) {
 		if (!position.isOnBoard())
 			return null;
 
-		return board[position.row()][position.column()];
+		return PieceType.toPiece(squares[toSquare(position)]);
 	}
 
 	@SuppressWarnings("unused")
 	private void printBoard() {
-		for (Piece[] row : board) {
+		for (int row = 0; row < 8; row++) {
 			System.out.println();
-			for (Piece piece : row)
+			for (int column = 0; column < 8; column++) {
+				Piece piece = PieceType.toPiece(squares[Bitboards.square(row, column)]);
 				if (piece == null)
 					System.out.print("-");
 				else
 					System.out.print(piece);
+			}
 		}
 		System.out.println("\n");
 	}
 
-	public void clearCache() {
-		deletedPieceCache.clear();
-		moveCache.clear();
-		pawnToQueenConversionCache.clear();
+	// Number of moves made, every one of which can be reversed
+	int getMoveCount() {
+		return historySize;
+	}
+
+	// Returns the packed move made at the given index, 0 being the earliest
+	int getMove(int index) {
+		return moveHistory[index];
 	}
 
-	private void buildHeuristicMapping() {
-		heuristicMap.put("k", 950);
-		heuristicMap.put("q", 100);
-		heuristicMap.put("r", 60);
-		heuristicMap.put("b", 40);
-		heuristicMap.put("n", 30);
-		heuristicMap.put("p", 10);
+	static int pieceValue(int type) {
+		return Evaluation.pieceValue(type);
 	}
 
+	// Material, piece placement and pawn structure from the team's side, blended between midgame and endgame by
+	// material left
 	public int generateHeuristicValue(Team team) {
-		int value = 0;
-
-		for (Piece[] row : board)
-			for (Piece piece : row)
-				if (piece != null) {
-					if (team == piece.getTeam())
-						value += heuristicMap.get(piece.toString().toLowerCase());
-					else
-						value -= heuristicMap.get(piece.toString().toLowerCase());
-				}
+		return generateHeuristicValue(team, Evaluation.pawnStructure(pieces[0][PAWN], pieces[1][PAWN]));
+	}
+
+	// Same as above, with the pawn structure score looked up in a cache
+	int generateHeuristicValue(Team team, PawnTable pawnTable) {
+		return generateHeuristicValue(team, pawnTable.probe(pawnHash, pieces[0][PAWN], pieces[1][PAWN]));
+	}
+
+	private int generateHeuristicValue(Team team, int pawnStructure) {
+		int midgame = midgameScore + Evaluation.midgameOf(pawnStructure);
+		int endgame = endgameScore + Evaluation.endgameOf(pawnStructure);
+		int value = Evaluation.taper(midgame, endgame, phase);
 
-		return value;
+		return team == Team.WHITE ? value : -value;
 	}
 }
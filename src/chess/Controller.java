@@ -1,15 +1,32 @@
 package chess;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.Observable;
 import java.util.Observer;
-
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/*
+ * Runs the game loop on the main thread. Everything the player does in the view is handed over from the Swing thread
+ * through a queue, so only the game loop touches the board, and it sleeps until there's something to do.
+ * The AI thinks on a thread of its own, and the loop keeps taking saves and loads while it does.
+ * While the player thinks, the AI ponders: it guesses the reply from its principal variation and searches the position
+ * after it. If the guess is right the search carries on as the AI's real one, otherwise it's cancelled.
+ */
 public class Controller implements Observer {
+	// Opening book looked for in the working directory, next to the piece images
+	private static final String BOOK_FILE = "book.bin";
+
+	// Endgame tables, written there by TablebaseGenerator
+	private static final String TABLEBASE_DIRECTORY = "tablebases";
+
 	private Board board;
 	private final View view;
 	private final MinimaxAI ai;
@@ -17,6 +34,30 @@ public class Controller implements Observer {
 	private Position endOfPlayerMove;
 	private Team currentTeam;
 
+	// Result of the AI's last search, its principal variation holds the reply it expects
+	private SearchResult lastResult;
+
+	// Search of the position after the reply being pondered on, null when not pondering
+	private CompletableFuture<SearchResult> ponderSearch;
+	private int ponderMove;
+
+	// Set when the player makes the move being pondered on, from then on the ponder search reports its progress
+	private AtomicBoolean ponderHit;
+
+	// Player input waiting for the game loop, along with word that the AI has finished thinking
+	private final BlockingQueue<Input> input = new LinkedBlockingQueue<>();
+
+	// Something for the game loop to handle, of the type the view gave it or NONE when the AI finishes
+	private static class Input {
+		private final UpdateType type;
+		private final Object information;
+
+		Input(UpdateType type, Object information) {
+			this.type = type;
+			this.information = information;
+		}
+	}
+
 	public Controller() {
 		board = new Board();
 
@@ -25,6 +66,26 @@ public class Controller implements Observer {
 		view.addObserver(this);
 
 		ai = new MinimaxAI(4, Team.WHITE);
+		ai.setOpeningBook(openBook());
+
+		// Tables are optional too, and any that are missing are simply searched
+		if (Files.isDirectory(Paths.get(TABLEBASE_DIRECTORY)))
+			ai.setTablebase(new Tablebase(Paths.get(TABLEBASE_DIRECTORY)));
+	}
+
+	// The book is optional, the AI searches every move without one
+	private static OpeningBook openBook() {
+		Path path = Paths.get(BOOK_FILE);
+
+		if (!Files.exists(path))
+			return null;
+
+		try {
+			return OpeningBook.open(path);
+		} catch (IOException e) {
+			e.printStackTrace();
+			return null;
+		}
 	}
 
 	// Main control method for entire program
@@ -35,15 +96,25 @@ public class Controller implements Observer {
 		boolean running = true;
 
 		while (running) {
-			// Check if there's a checkmate or stalemate. If there is, end of game
+			// Check if there's a checkmate, stalemate or draw. If there is, end of game
 			status = board.getGameStatus(currentTeam);
-			if (status == GameStatus.CHECKMATE || status == GameStatus.STALEMATE) {
+			if (status != GameStatus.INPLAY) {
 				view.gameOverMessage(status, currentTeam);
 				running = false;
 				continue;
 			}
 
-			move = getMove();
+			try {
+				move = getMove();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				running = false;
+				continue;
+			}
+
+			// A game was loaded instead of a move being made, so start the turn again in the new game
+			if (move == null)
+				continue;
 
 			// Check if move follows the rules of Chess. If not, repeat turn
 			if (!board.isValidMove(move, currentTeam)) {
@@ -58,7 +129,7 @@ public class Controller implements Observer {
 			}
 
 			// Update GUI and switch to next player
-			updateView(move);
+			updateView();
 			view.moveMessage(move);
 			currentTeam = getNextTurn();
 		}
@@ -77,16 +148,62 @@ public class Controller implements Observer {
 		}
 	}
 
-	private Move getMove() {
+	// Returns null if a game is loaded before the move is picked, or the AI's search fails
+	private Move getMove() throws InterruptedException {
 		if (currentTeam == Team.WHITE)
-			return ai.pickMove(board);
+			return pickAIMove();
 		else
 			return pickPlayerMove();
 	}
 
-	private Move pickPlayerMove() {
+	// Waits for the AI to think of a move, handling saves and loads meanwhile. A load cancels the search.
+	// If the player made the move being pondered on, that search already has a head start and carries on
+	private Move pickAIMove() throws InterruptedException {
+		CompletableFuture<SearchResult> thinking;
+
+		if (ponderSearch != null && lastMoveWas(ponderMove)) {
+			thinking = ponderSearch;
+			ponderHit.set(true);
+		} else {
+			stopPondering();
+			thinking = ai.searchAsync(board, view::thinkingMessage);
+		}
+
+		ponderSearch = null;
+		thinking.whenComplete((result, error) -> input.add(new Input(UpdateType.NONE, thinking)));
+
+		while (true) {
+			Input next = input.take();
+
+			// Word from a search that was cancelled is left over, so check it's from this one
+			if (next.type == UpdateType.NONE && next.information == thinking) {
+				try {
+					lastResult = thinking.join();
+				} catch (CompletionException e) {
+					e.printStackTrace();
+					lastResult = null;
+					return null;
+				}
+
+				return lastResult.getBestMove();
+			}
+
+			// Clicks on the board are ignored until it's the player's turn
+			if (next.type != UpdateType.MOVE && handleInput(next)) {
+				thinking.cancel(false);
+				return null;
+			}
+		}
+	}
+
+	private Move pickPlayerMove() throws InterruptedException {
+		startPondering();
+
 		while (startOfPlayerMove == null || endOfPlayerMove == null)
-			waitForValidInput();
+			if (handleInput(input.take())) {
+				stopPondering();
+				return null;
+			}
 
 		Move ret = new Move(startOfPlayerMove, endOfPlayerMove);
 		resetMove();
@@ -94,42 +211,79 @@ public class Controller implements Observer {
 		return ret;
 	}
 
-	private void waitForValidInput() {
-		try {
-			Thread.sleep(10);
-		} catch (InterruptedException e) {
-			e.printStackTrace();
+	// Returns true if a game was loaded
+	private boolean handleInput(Input next) {
+		switch (next.type) {
+
+		case SAVE:
+			save(next.information);
+			return false;
+		case LOAD:
+			return load(next.information);
+		case MOVE:
+			updatePlayerMove(next.information);
+			return false;
+		case NONE:
+			return false;
+		default:
+			throw new AssertionError("Enum doesn't seem to match with any supported types");
 		}
 	}
 
+	// Searches the position after the reply the AI expects, unless it's already doing so or doesn't expect one
+	private void startPondering() {
+		if (ponderSearch != null || lastResult == null)
+			return;
+
+		int[] line = lastResult.getPackedPrincipalVariation();
+		if (line.length < 2 || board.getMoveCount() == 0 || !lastMoveWas(line[0]))
+			return;
+
+		Board afterReply = new Board(board);
+		afterReply.makeMove(line[1]);
+
+		AtomicBoolean hit = new AtomicBoolean();
+
+		ponderMove = line[1];
+		ponderHit = hit;
+		ponderSearch = ai.searchAsync(afterReply, result -> {
+			if (hit.get())
+				view.thinkingMessage(result);
+		});
+	}
+
+	// Cancelling lets the search thread move on to the next search quickly, and what the ponder search stored in
+	// the transposition table is still there for it
+	private void stopPondering() {
+		if (ponderSearch != null)
+			ponderSearch.cancel(false);
+
+		ponderSearch = null;
+	}
+
+	// The promotion counts too, since the view always promotes to a queen and the line may hold an underpromotion
+	private boolean lastMoveWas(int move) {
+		int last = board.getMove(board.getMoveCount() - 1);
+
+		return PackedMove.start(last) == PackedMove.start(move)
+				&& PackedMove.destination(last) == PackedMove.destination(move)
+				&& PackedMove.promotion(last) == PackedMove.promotion(move);
+	}
+
 	private Team getNextTurn() {
 		return Team.otherTeam(currentTeam);
 	}
 
-	// Update GUI with new state of board resulting from a move
-	private void updateView(Move move) {
-		String updateNewPiecePos = board.pieceAt(move.destination()).toString();
-
-		view.clearTile(move.start());
-		view.updateTile(move.destination(), updateNewPiecePos);
+	// Update GUI with new state of board resulting from a move. Every tile is redrawn, since castling moves a rook as
+	// well and en passant takes a pawn off a square the move doesn't touch
+	private void updateView() {
+		setupBoardImages();
 	}
 
+	// Called on the Swing thread, which hands the input to the game loop rather than touching the board itself
 	@Override
 	public void update(Observable gui, Object information) {
-		switch (view.getUpdateType()) {
-
-		case SAVE:
-			save(information);
-			break;
-		case LOAD:
-			load(information);
-			break;
-		case MOVE:
-			updatePlayerMove(information);
-			break;
-		default:
-			throw new AssertionError("Enum doesn't seem to match with any supported types");
-		}
+		input.add(new Input(view.getUpdateType(), information));
 	}
 
 	private void updatePlayerMove(Object object) {
@@ -158,11 +312,8 @@ public class Controller implements Observer {
 
 		File file = (File) object;
 
-		try (FileOutputStream fileStream = new FileOutputStream(file);
-				ObjectOutputStream os = new ObjectOutputStream(fileStream)) {
-
-			os.writeObject(board);
-
+		try {
+			GameFile.write(board, file.toPath());
 		} catch (IOException e) {
 			e.printStackTrace();
 			view.fileIOError();
@@ -174,22 +325,23 @@ public class Controller implements Observer {
 		endOfPlayerMove = null;
 	}
 
-	private void load(Object object) {
+	// Returns true if the game was replaced by the one loaded
+	private boolean load(Object object) {
 		if (!(object instanceof File))
 			throw new AssertionError("There doesn't seem to be a file here");
 
 		File file = (File) object;
 
-		try (FileInputStream fileStream = new FileInputStream(file);
-				ObjectInputStream os = new ObjectInputStream(fileStream)) {
-
-			board = (Board) os.readObject();
+		try {
+			board = GameFile.read(file.toPath());
+			currentTeam = board.getSideToMove();
 			resetMove();
 			setupBoardImages();
-
-		} catch (IOException | ClassNotFoundException e) {
+			return true;
+		} catch (IOException e) {
 			e.printStackTrace();
 			view.fileIOError();
+			return false;
 		}
 	}
 }
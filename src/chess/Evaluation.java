@@ -0,0 +1,240 @@
+package chess;
+
+/*
+ * Material and piece-square values for the heuristic. Every piece scores its material plus a bonus for its square,
+ * once for the midgame and once for the endgame. Board keeps running totals of both as pieces are put down and
+ * picked up, and blends them by how much material is left, so evaluating a position doesn't look at the pieces.
+ * Scores are in centipawns, positive when good for white.
+ */
+final class Evaluation {
+	// Game phase when all the starting pieces other than pawns and kings are on the board
+	static final int MAX_PHASE = 24;
+
+	private static final int[] MIDGAME_VALUES = { 0, 100, 320, 330, 500, 900, 0 };
+	private static final int[] ENDGAME_VALUES = { 0, 120, 300, 320, 520, 950, 0 };
+
+	// How much each piece type counts towards the game still being in the midgame
+	private static final int[] PHASE_WEIGHTS = { 0, 0, 1, 1, 2, 4, 0 };
+
+	// Piece-square tables from white's side, laid out as the board is seen from white, so the first row is the
+	// one black starts on. Black uses them mirrored
+	private static final int[] PAWN_MIDGAME = {
+			0, 0, 0, 0, 0, 0, 0, 0,
+			50, 50, 50, 50, 50, 50, 50, 50,
+			10, 10, 20, 30, 30, 20, 10, 10,
+			5, 5, 10, 25, 25, 10, 5, 5,
+			0, 0, 0, 20, 20, 0, 0, 0,
+			5, -5, -10, 0, 0, -10, -5, 5,
+			5, 10, 10, -20, -20, 10, 10, 5,
+			0, 0, 0, 0, 0, 0, 0, 0 };
+
+	private static final int[] PAWN_ENDGAME = {
+			0, 0, 0, 0, 0, 0, 0, 0,
+			90, 90, 90, 90, 90, 90, 90, 90,
+			55, 55, 55, 55, 55, 55, 55, 55,
+			30, 30, 30, 30, 30, 30, 30, 30,
+			15, 15, 15, 15, 15, 15, 15, 15,
+			5, 5, 5, 5, 5, 5, 5, 5,
+			0, 0, 0, 0, 0, 0, 0, 0,
+			0, 0, 0, 0, 0, 0, 0, 0 };
+
+	private static final int[] KNIGHT_TABLE = {
+			-50, -40, -30, -30, -30, -30, -40, -50,
+			-40, -20, 0, 0, 0, 0, -20, -40,
+			-30, 0, 10, 15, 15, 10, 0, -30,
+			-30, 5, 15, 20, 20, 15, 5, -30,
+			-30, 0, 15, 20, 20, 15, 0, -30,
+			-30, 5, 10, 15, 15, 10, 5, -30,
+			-40, -20, 0, 5, 5, 0, -20, -40,
+			-50, -40, -30, -30, -30, -30, -40, -50 };
+
+	private static final int[] BISHOP_TABLE = {
+			-20, -10, -10, -10, -10, -10, -10, -20,
+			-10, 0, 0, 0, 0, 0, 0, -10,
+			-10, 0, 5, 10, 10, 5, 0, -10,
+			-10, 5, 5, 10, 10, 5, 5, -10,
+			-10, 0, 10, 10, 10, 10, 0, -10,
+			-10, 10, 10, 10, 10, 10, 10, -10,
+			-10, 5, 0, 0, 0, 0, 5, -10,
+			-20, -10, -10, -10, -10, -10, -10, -20 };
+
+	private static final int[] ROOK_TABLE = {
+			0, 0, 0, 0, 0, 0, 0, 0,
+			5, 10, 10, 10, 10, 10, 10, 5,
+			-5, 0, 0, 0, 0, 0, 0, -5,
+			-5, 0, 0, 0, 0, 0, 0, -5,
+			-5, 0, 0, 0, 0, 0, 0, -5,
+			-5, 0, 0, 0, 0, 0, 0, -5,
+			-5, 0, 0, 0, 0, 0, 0, -5,
+			0, 0, 0, 5, 5, 0, 0, 0 };
+
+	private static final int[] QUEEN_TABLE = {
+			-20, -10, -10, -5, -5, -10, -10, -20,
+			-10, 0, 0, 0, 0, 0, 0, -10,
+			-10, 0, 5, 5, 5, 5, 0, -10,
+			-5, 0, 5, 5, 5, 5, 0, -5,
+			0, 0, 5, 5, 5, 5, 0, -5,
+			-10, 5, 5, 5, 5, 5, 0, -10,
+			-10, 0, 5, 0, 0, 0, 0, -10,
+			-20, -10, -10, -5, -5, -10, -10, -20 };
+
+	// The king hides behind its pawns while there are pieces around to attack it, and heads for the centre after
+	private static final int[] KING_MIDGAME = {
+			-30, -40, -40, -50, -50, -40, -40, -30,
+			-30, -40, -40, -50, -50, -40, -40, -30,
+			-30, -40, -40, -50, -50, -40, -40, -30,
+			-30, -40, -40, -50, -50, -40, -40, -30,
+			-20, -30, -30, -40, -40, -30, -30, -20,
+			-10, -20, -20, -20, -20, -20, -20, -10,
+			20, 20, 0, 0, 0, 0, 20, 20,
+			20, 30, 10, 0, 0, 10, 30, 20 };
+
+	private static final int[] KING_ENDGAME = {
+			-50, -40, -30, -20, -20, -30, -40, -50,
+			-30, -20, -10, 0, 0, -10, -20, -30,
+			-30, -10, 20, 30, 30, 20, -10, -30,
+			-30, -10, 30, 40, 40, 30, -10, -30,
+			-30, -10, 30, 40, 40, 30, -10, -30,
+			-30, -10, 20, 30, 30, 20, -10, -30,
+			-30, -30, 0, 0, 0, 0, -30, -30,
+			-50, -30, -30, -30, -30, -30, -30, -50 };
+
+	private static final int[][] MIDGAME_TABLES = { null, PAWN_MIDGAME, KNIGHT_TABLE, BISHOP_TABLE, ROOK_TABLE,
+			QUEEN_TABLE, KING_MIDGAME };
+	private static final int[][] ENDGAME_TABLES = { null, PAWN_ENDGAME, KNIGHT_TABLE, BISHOP_TABLE, ROOK_TABLE,
+			QUEEN_TABLE, KING_ENDGAME };
+
+	// Pawn structure penalties and bonuses as midgame, endgame pairs. Passed pawns are indexed by rows advanced
+	private static final int DOUBLED_MIDGAME = -10;
+	private static final int DOUBLED_ENDGAME = -20;
+	private static final int ISOLATED_MIDGAME = -10;
+	private static final int ISOLATED_ENDGAME = -15;
+	private static final int[] PASSED_MIDGAME = { 0, 5, 10, 15, 25, 40, 60, 0 };
+	private static final int[] PASSED_ENDGAME = { 0, 10, 20, 35, 60, 90, 130, 0 };
+
+	private static final long[] COLUMNS = new long[8];
+	private static final long[] ADJACENT_COLUMNS = new long[8];
+
+	// Squares in front of a pawn on its own and neighbouring columns, which must be free of enemy pawns for it to
+	// be passed. Indexed by team then square
+	private static final long[][] PASSED_SPANS = new long[2][64];
+
+	// Signed score of a piece on a square, indexed by square code then square, negative for black pieces
+	private static final int[][] MIDGAME = new int[16][64];
+	private static final int[][] ENDGAME = new int[16][64];
+
+	static {
+		for (int team = 0; team < 2; team++)
+			for (int type = PieceType.PAWN; type <= PieceType.KING; type++)
+				for (int square = 0; square < 64; square++) {
+					int code = PieceType.code(team, type);
+					int index = tableIndex(team, square);
+					int sign = team == 0 ? 1 : -1;
+
+					MIDGAME[code][square] = sign * (MIDGAME_VALUES[type] + MIDGAME_TABLES[type][index]);
+					ENDGAME[code][square] = sign * (ENDGAME_VALUES[type] + ENDGAME_TABLES[type][index]);
+				}
+
+		for (int column = 0; column < 8; column++)
+			COLUMNS[column] = 0x0101010101010101L << column;
+
+		for (int column = 0; column < 8; column++)
+			ADJACENT_COLUMNS[column] = (column > 0 ? COLUMNS[column - 1] : 0) | (column < 7 ? COLUMNS[column + 1] : 0);
+
+		for (int square = 0; square < 64; square++) {
+			int row = Bitboards.row(square);
+			long columns = COLUMNS[Bitboards.column(square)] | ADJACENT_COLUMNS[Bitboards.column(square)];
+
+			PASSED_SPANS[0][square] = row == 7 ? 0 : columns & (-1L << (8 * (row + 1)));
+			PASSED_SPANS[1][square] = columns & ((1L << (8 * row)) - 1);
+		}
+	}
+
+	private Evaluation() {
+	}
+
+	static int midgame(int code, int square) {
+		return MIDGAME[code][square];
+	}
+
+	static int endgame(int code, int square) {
+		return ENDGAME[code][square];
+	}
+
+	static int phaseWeight(int type) {
+		return PHASE_WEIGHTS[type];
+	}
+
+	// Material value of a piece type, used to size search margins and the gain from captures
+	static int pieceValue(int type) {
+		return MIDGAME_VALUES[type];
+	}
+
+	// Blends midgame and endgame totals by phase, which can go past the maximum after promotions
+	static int taper(int midgame, int endgame, int phase) {
+		phase = Math.min(phase, MAX_PHASE);
+
+		return (midgame * phase + endgame * (MAX_PHASE - phase)) / MAX_PHASE;
+	}
+
+	// Scores doubled, isolated and passed pawns, returned as a midgame and endgame pair packed by pack.
+	// Only depends on where the pawns are, so PawnTable can cache it by the pawn hash
+	static int pawnStructure(long whitePawns, long blackPawns) {
+		int midgame = 0;
+		int endgame = 0;
+
+		for (int team = 0; team < 2; team++) {
+			long ours = team == 0 ? whitePawns : blackPawns;
+			long theirs = team == 0 ? blackPawns : whitePawns;
+			int sign = team == 0 ? 1 : -1;
+
+			for (int column = 0; column < 8; column++) {
+				int count = Long.bitCount(ours & COLUMNS[column]);
+
+				if (count > 1) {
+					midgame += sign * DOUBLED_MIDGAME * (count - 1);
+					endgame += sign * DOUBLED_ENDGAME * (count - 1);
+				}
+
+				if (count > 0 && (ours & ADJACENT_COLUMNS[column]) == 0) {
+					midgame += sign * ISOLATED_MIDGAME * count;
+					endgame += sign * ISOLATED_ENDGAME * count;
+				}
+			}
+
+			for (long remaining = ours; remaining != 0; remaining &= remaining - 1) {
+				int square = Long.numberOfTrailingZeros(remaining);
+
+				if ((theirs & PASSED_SPANS[team][square]) == 0) {
+					int advanced = team == 0 ? Bitboards.row(square) : 7 - Bitboards.row(square);
+
+					midgame += sign * PASSED_MIDGAME[advanced];
+					endgame += sign * PASSED_ENDGAME[advanced];
+				}
+			}
+		}
+
+		return pack(midgame, endgame);
+	}
+
+	// Packs a midgame and endgame score into one int, the endgame score in the low 16 bits
+	static int pack(int midgame, int endgame) {
+		return (midgame << 16) + endgame;
+	}
+
+	static int midgameOf(int packed) {
+		return (packed + 0x8000) >> 16;
+	}
+
+	static int endgameOf(int packed) {
+		return (short) packed;
+	}
+
+	// Tables list white's eighth row first, and row 0 of the board is white's first row
+	private static int tableIndex(int team, int square) {
+		int row = Bitboards.row(square);
+		int column = Bitboards.column(square);
+
+		return team == 0 ? Bitboards.square(7 - row, column) : Bitboards.square(row, column);
+	}
+}
@@ -0,0 +1,233 @@
+package chess;
+
+/*
+ * Reads and writes Forsyth-Edwards Notation, the standard one line description of a position:
+ * the pieces row by row from black's side, the side to move, castling rights, en passant square and move clocks.
+ * Reading scans the string a character at a time and sets up the board in place, so loading doesn't allocate.
+ */
+final class Fen {
+	static final String START_POSITION = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+
+	// Piece letters indexed by piece type, upper case for white
+	private static final String WHITE_LETTERS = " PNBRQK";
+	private static final String BLACK_LETTERS = " pnbrqk";
+
+	private static final String CASTLING_LETTERS = "KQkq";
+
+	private Fen() {
+	}
+
+	static void load(Board board, CharSequence fen) {
+		board.clear();
+
+		int length = fen.length();
+		int i = 0;
+		int row = 7;
+		int column = 0;
+
+		// Piece placement, starting from the a column of black's back row
+		for (; i < length && fen.charAt(i) != ' '; i++) {
+			char c = fen.charAt(i);
+
+			if (c == '/') {
+				if (column != 8 || row == 0)
+					throw invalid(fen, "each row must have 8 squares, and there must be 8 rows");
+
+				row--;
+				column = 0;
+			} else if (c >= '1' && c <= '8') {
+				column += c - '0';
+
+				if (column > 8)
+					throw invalid(fen, "a row has more than 8 squares");
+			} else {
+				int code = pieceCode(c);
+
+				if (code == PieceType.NONE)
+					throw invalid(fen, "'" + c + "' isn't a piece");
+				if (column > 7)
+					throw invalid(fen, "a row has more than 8 squares");
+
+				board.putPiece(Bitboards.square(row, column++), code);
+			}
+		}
+
+		if (row != 0 || column != 8)
+			throw invalid(fen, "each row must have 8 squares, and there must be 8 rows");
+
+		i = skipSpaces(fen, i);
+		if (i >= length)
+			throw invalid(fen, "the side to move is missing");
+
+		int sideToMove;
+		switch (fen.charAt(i++)) {
+
+		case 'w':
+			sideToMove = 0;
+			break;
+		case 'b':
+			sideToMove = 1;
+			break;
+		default:
+			throw invalid(fen, "the side to move must be w or b");
+		}
+
+		// Everything after the side to move is optional, EPD and some tools leave it out
+		int castlingRights = 0;
+		i = skipSpaces(fen, i);
+
+		if (i < length && fen.charAt(i) == '-')
+			i++;
+		else
+			for (; i < length && fen.charAt(i) != ' '; i++) {
+				int index = CASTLING_LETTERS.indexOf(fen.charAt(i));
+
+				if (index < 0)
+					throw invalid(fen, "castling rights must be - or some of KQkq");
+
+				castlingRights |= 1 << index;
+			}
+
+		int enPassantSquare = -1;
+		i = skipSpaces(fen, i);
+
+		if (i < length && fen.charAt(i) == '-')
+			i++;
+		else if (i < length) {
+			if (i + 1 >= length)
+				throw invalid(fen, "the en passant square is cut short");
+
+			char file = fen.charAt(i);
+			char rank = fen.charAt(i + 1);
+
+			if (file < 'a' || file > 'h' || (rank != '3' && rank != '6'))
+				throw invalid(fen, "the en passant square must be - or a square on the third or sixth row");
+
+			enPassantSquare = Bitboards.square(rank - '1', file - 'a');
+			i += 2;
+		}
+
+		int halfmoveClock = 0;
+		i = skipSpaces(fen, i);
+
+		if (i < length) {
+			halfmoveClock = readNumber(fen, i);
+			i = skipSpaces(fen, skipNumber(fen, i));
+		}
+
+		int fullmoveNumber = 1;
+
+		if (i < length) {
+			fullmoveNumber = Math.max(1, readNumber(fen, i));
+			i = skipSpaces(fen, skipNumber(fen, i));
+		}
+
+		if (i < length)
+			throw invalid(fen, "there's more after the move number");
+
+		board.setState(sideToMove, castlingRights, enPassantSquare, halfmoveClock, fullmoveNumber);
+
+		String impossibility = board.findImpossibility();
+		if (impossibility != null)
+			throw invalid(fen, impossibility);
+	}
+
+	static String write(Board board) {
+		StringBuilder fen = new StringBuilder(90);
+
+		for (int row = 7; row >= 0; row--) {
+			int empty = 0;
+
+			for (int column = 0; column < 8; column++) {
+				int code = board.squareCode(Bitboards.square(row, column));
+
+				if (code == PieceType.NONE) {
+					empty++;
+					continue;
+				}
+
+				if (empty > 0)
+					fen.append(empty);
+
+				empty = 0;
+				fen.append(pieceLetter(code));
+			}
+
+			if (empty > 0)
+				fen.append(empty);
+			if (row > 0)
+				fen.append('/');
+		}
+
+		fen.append(board.getSideToMove() == Team.WHITE ? " w " : " b ");
+
+		if (board.getCastlingRights() == 0)
+			fen.append('-');
+
+		for (int i = 0; i < CASTLING_LETTERS.length(); i++)
+			if ((board.getCastlingRights() & (1 << i)) != 0)
+				fen.append(CASTLING_LETTERS.charAt(i));
+
+		fen.append(' ');
+
+		if (board.getEnPassantSquare() < 0)
+			fen.append('-');
+		else
+			fen.append(PackedMove.squareName(board.getEnPassantSquare()));
+
+		fen.append(' ').append(board.getHalfmoveClock()).append(' ').append(board.getFullmoveNumber());
+
+		return fen.toString();
+	}
+
+	static char pieceLetter(int code) {
+		String letters = PieceType.teamOf(code) == 0 ? WHITE_LETTERS : BLACK_LETTERS;
+		return letters.charAt(PieceType.typeOf(code));
+	}
+
+	// Returns the square code for a piece letter, 0 if it isn't one
+	private static int pieceCode(char c) {
+		int type = WHITE_LETTERS.indexOf(c);
+		if (type > 0)
+			return PieceType.code(0, type);
+
+		type = BLACK_LETTERS.indexOf(c);
+		if (type > 0)
+			return PieceType.code(1, type);
+
+		return PieceType.NONE;
+	}
+
+	private static int skipSpaces(CharSequence fen, int i) {
+		while (i < fen.length() && fen.charAt(i) == ' ')
+			i++;
+
+		return i;
+	}
+
+	private static int skipNumber(CharSequence fen, int i) {
+		while (i < fen.length() && fen.charAt(i) != ' ')
+			i++;
+
+		return i;
+	}
+
+	private static int readNumber(CharSequence fen, int i) {
+		int number = 0;
+
+		for (; i < fen.length() && fen.charAt(i) != ' '; i++) {
+			char c = fen.charAt(i);
+
+			if (c < '0' || c > '9' || number > 100000)
+				throw invalid(fen, "move clocks must be numbers");
+
+			number = number * 10 + c - '0';
+		}
+
+		return number;
+	}
+
+	private static IllegalArgumentException invalid(CharSequence fen, String reason) {
+		return new IllegalArgumentException("Invalid FEN \"" + fen + "\", " + reason);
+	}
+}
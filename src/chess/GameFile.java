@@ -0,0 +1,199 @@
+package chess;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/*
+ * Saves and loads games in a compact binary format, read and written through NIO channels.
+ * All numbers are big endian:
+ *
+ *   int    magic number 0x43485347, "CHSG"
+ *   short  format version
+ *   32     the position the game started from, a nibble per square from square 0 (a1) up, low nibble first.
+ *          A nibble is the piece type (1 pawn to 6 king), plus 8 for black, 0 for an empty square
+ *   byte   side to move, 0 white or 1 black
+ *   byte   castling rights, 1 white kingside, 2 white queenside, 4 black kingside, 8 black queenside
+ *   byte   en passant square or -1
+ *   short  halfmove clock
+ *   short  fullmove number
+ *   int    number of moves made since
+ *   short  each move, start square in bits 0-5, destination in bits 6-11 and any promotion's piece type in 12-14
+ *
+ * Moves are matched against the legal moves when loading, so a file doesn't depend on how moves are packed inside
+ * the engine, and a corrupt file can't set up an impossible game.
+ */
+final class GameFile {
+	private static final int MAGIC = 0x43485347;
+	static final int VERSION = 1;
+
+	private static final int HEADER_BYTES = 4 + 2 + 32 + 3 + 2 + 2 + 4;
+
+	private GameFile() {
+	}
+
+	static void write(Board board, Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			write(board, channel);
+		}
+	}
+
+	static Board read(Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			if (channel.size() > Integer.MAX_VALUE)
+				throw new IOException("File is too large to be a saved game");
+
+			ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+
+			while (buffer.hasRemaining())
+				if (channel.read(buffer) < 0)
+					break;
+
+			return decode(buffer.flip());
+		}
+	}
+
+	static void write(Board board, WritableByteChannel channel) throws IOException {
+		ByteBuffer buffer = encode(board);
+
+		while (buffer.hasRemaining())
+			channel.write(buffer);
+	}
+
+	// Reads a game from the rest of the channel
+	static Board read(ReadableByteChannel channel) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES);
+
+		while (buffer.hasRemaining())
+			if (channel.read(buffer) < 0)
+				throw new IOException("Saved game is cut short");
+
+		int moveCount = buffer.getInt(HEADER_BYTES - 4);
+		if (moveCount < 0 || moveCount > Integer.MAX_VALUE / 2 - HEADER_BYTES)
+			throw new IOException("Saved game has an impossible number of moves");
+
+		ByteBuffer whole = ByteBuffer.allocate(HEADER_BYTES + 2 * moveCount);
+		whole.put(buffer.flip());
+
+		while (whole.hasRemaining())
+			if (channel.read(whole) < 0)
+				throw new IOException("Saved game is cut short");
+
+		whole.flip();
+		return decode(whole);
+	}
+
+	// Packs the game's starting position and every move made since into a buffer ready to be written
+	static ByteBuffer encode(Board board) {
+		int moveCount = board.getMoveCount();
+		ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + 2 * moveCount);
+
+		// Take back every move to find where the game started
+		Board start = new Board(board);
+		for (int i = 0; i < moveCount; i++)
+			start.reverseLastMove();
+
+		buffer.putInt(MAGIC);
+		buffer.putShort((short) VERSION);
+
+		for (int square = 0; square < 64; square += 2)
+			buffer.put((byte) (start.squareCode(square) | (start.squareCode(square + 1) << 4)));
+
+		buffer.put((byte) start.getSideToMove().ordinal());
+		buffer.put((byte) start.getCastlingRights());
+		buffer.put((byte) start.getEnPassantSquare());
+		buffer.putShort((short) start.getHalfmoveClock());
+		buffer.putShort((short) start.getFullmoveNumber());
+		buffer.putInt(moveCount);
+
+		for (int i = 0; i < moveCount; i++)
+			buffer.putShort((short) encodeMove(board.getMove(i)));
+
+		return buffer.flip();
+	}
+
+	static Board decode(ByteBuffer buffer) throws IOException {
+		try {
+			if (buffer.getInt() != MAGIC)
+				throw new IOException("File isn't a saved game");
+
+			int version = buffer.getShort();
+			if (version != VERSION)
+				throw new IOException("Saved game is version " + version + ", only version " + VERSION
+						+ " can be read");
+
+			Board board = new Board();
+			board.clear();
+
+			for (int square = 0; square < 64; square += 2) {
+				int pair = buffer.get() & 0xFF;
+
+				putPiece(board, square, pair & 0xF);
+				putPiece(board, square + 1, pair >>> 4);
+			}
+
+			int sideToMove = buffer.get();
+			int castlingRights = buffer.get();
+			int enPassantSquare = buffer.get();
+			int halfmoveClock = buffer.getShort() & 0xFFFF;
+			int fullmoveNumber = buffer.getShort() & 0xFFFF;
+
+			if ((sideToMove & ~1) != 0 || (castlingRights & ~Board.ALL_CASTLING) != 0 || enPassantSquare >= 64)
+				throw new IOException("Saved game has an impossible position");
+
+			board.setState(sideToMove, castlingRights, Math.max(-1, enPassantSquare), halfmoveClock, fullmoveNumber);
+
+			String impossibility = board.findImpossibility();
+			if (impossibility != null)
+				throw new IOException("Saved game has an impossible position, " + impossibility);
+
+			replayMoves(board, buffer, buffer.getInt());
+
+			return board;
+
+		} catch (BufferUnderflowException e) {
+			throw new IOException("Saved game is cut short", e);
+		}
+	}
+
+	private static void putPiece(Board board, int square, int code) throws IOException {
+		if (code == PieceType.NONE)
+			return;
+
+		int type = PieceType.typeOf(code);
+		if (type < PieceType.PAWN || type > PieceType.KING)
+			throw new IOException("Saved game has an unknown piece");
+
+		board.putPiece(square, code);
+	}
+
+	private static void replayMoves(Board board, ByteBuffer buffer, int moveCount) throws IOException {
+		int[] moves = new int[PackedMove.MAX_MOVES];
+
+		for (int i = 0; i < moveCount; i++) {
+			int saved = buffer.getShort() & 0xFFFF;
+			int count = board.generateMoves(board.getSideToMove(), moves);
+			int found = PackedMove.NONE;
+
+			for (int j = 0; j < count && found == PackedMove.NONE; j++)
+				if (encodeMove(moves[j]) == saved)
+					found = moves[j];
+
+			if (found == PackedMove.NONE)
+				throw new IOException("Saved game has an illegal move at move " + (i + 1));
+
+			board.makeMove(found);
+		}
+	}
+
+	// A move as it's saved, which only needs what tells it apart from the other legal moves
+	private static int encodeMove(int move) {
+		return PackedMove.start(move) | (PackedMove.destination(move) << 6) | (PackedMove.promotion(move) << 12);
+	}
+}
@@ -2,7 +2,7 @@ package chess;
 
 
 public enum GameStatus {
-	CHECKMATE, STALEMATE, INPLAY;
+	CHECKMATE, STALEMATE, REPETITION, FIFTY_MOVES, INSUFFICIENT_MATERIAL, INPLAY;
 	public static GameStatus gameStatus;
 	
 	public static String toString(GameStatus status) {
@@ -1,11 +1,8 @@
 package chess;
 
-import java.util.ArrayList;
-import java.util.List;
-
 public final class King extends Piece {
 
-	public King(Team t) {
+	King(Team t) {
 		super(t);
 	}
 
@@ -16,20 +13,4 @@ public final class King extends Piece {
 		else
 			return "k";
 	}
-
-	@Override
-	public List<Move> generateMoveList(Position start) {
-		List<Move> ret = new ArrayList<>();
-		
-		addPositionToMoveList(ret, start, new Position(start.row() - 1, start.column() - 1));
-		addPositionToMoveList(ret, start, new Position(start.row() - 1, start.column()));
-		addPositionToMoveList(ret, start, new Position(start.row() - 1, start.column() + 1));
-		addPositionToMoveList(ret, start, new Position(start.row(), start.column() - 1));
-		addPositionToMoveList(ret, start, new Position(start.row(), start.column() + 1));
-		addPositionToMoveList(ret, start, new Position(start.row() + 1, start.column() - 1));
-		addPositionToMoveList(ret, start, new Position(start.row() + 1, start.column() + 1));
-		addPositionToMoveList(ret, start, new Position(start.row() + 1, start.column()));
-		
-		return ret;		
-	}
 }
@@ -1,73 +1,891 @@
 package chess;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
 /*
- * Uses the minimax algorithm with alpha beta pruning to make moves
+ * Uses the minimax algorithm with alpha beta pruning to make moves, written in negamax form so every node
+ * scores the position for the team to move. Moves after the first at each node are tried with a null window
+ * first (principal variation search), and each iteration of the search starts with a narrow aspiration
+ * window around the last iteration's score.
+ * With more than one thread, helper threads search copies of the board at the same time and share
+ * what they find through the transposition table (Lazy SMP). Only the calling thread's result is used.
  */
 public class MinimaxAI {
+	private static final int DEFAULT_HASH_MEGABYTES = 16;
+
+	// Bigger than any heuristic value, but small enough to fit in a transposition table entry
+	private static final int INFINITY = 30000;
+
+	// Score for being checkmated at the root, mates further away score closer to zero
+	static final int MATE = 29000;
+	static final int MATE_BOUND = MATE - 1000;
+
+	// Null move pruning searches this many plies shallower than a normal move, one more in deep searches
+	private static final int NULL_MOVE_REDUCTION = 2;
+	private static final int NULL_MOVE_MIN_DEPTH = 3;
+
+	// Quiet moves this far down the ordering are searched a ply shallower, unless they prove better than expected
+	private static final int LATE_MOVE_INDEX = 3;
+	private static final int LATE_MOVE_MIN_DEPTH = 3;
+
+	// Within a couple of plies of the leaves, quiet moves are skipped if the heuristic value is this far below alpha
+	private static final int FUTILITY_MARGIN = 2 * Board.pieceValue(PieceType.PAWN);
+	private static final int FUTILITY_MAX_DEPTH = 2;
+
+	// One ply from the leaves, positions this far below alpha go straight to quiescence search
+	private static final int RAZOR_MARGIN = 3 * Board.pieceValue(PieceType.PAWN);
+
+	// Half the width of the first aspiration window, and the depth they're first used at
+	private static final int ASPIRATION_WINDOW = Board.pieceValue(PieceType.PAWN) / 2;
+	private static final int ASPIRATION_DEPTH = 4;
+
+	// Deepest a timed search will go, moves are buffered and stored in the transposition table up to this depth
+	private static final int MAX_PLY = 64;
+	public static final int MAX_DEPTH = MAX_PLY - 1;
+
+	// Captures that can't bring the score within this much of alpha are skipped in quiescence search
+	private static final int DELTA_MARGIN = 2 * Board.pieceValue(PieceType.PAWN);
+
+	// How many nodes are searched between checks of the clock
+	private static final int NODES_BETWEEN_TIME_CHECKS = 1024;
+
+	// Pawn structure scores cached per search thread, 12 bytes each
+	private static final int PAWN_TABLE_ENTRIES = 1 << 14;
+
 	private final int maxDepth;
-	private final Team team;
+	private Team team;
+
+	// Results of positions already searched, shared between every search and every thread
+	private TranspositionTable transpositionTable;
+
+	// The calling thread's searcher comes first, the rest run on the helper pool
+	private Searcher[] searchers;
+	private ExecutorService helperPool;
+
+	// Runs searches started by pickMoveAsync and searchAsync one at a time, created when first needed
+	private ExecutorService asyncExecutor;
+
+	// System.nanoTime() after which a timed search gives up, can be set from another thread while searching
+	private volatile long deadline;
+	private volatile boolean timed;
+
+	// Nodes the calling thread searches before giving up, 0 for no limit
+	private long nodeLimit;
+
+	// Set once the calling thread finishes or runs out of time, telling every thread to stop
+	private volatile boolean stopped;
+
+	// Set by another thread to end the search early
+	private volatile boolean stopRequested;
+
+	// Told about every iteration the calling thread finishes
+	private Consumer<SearchResult> progressListener;
+
+	// Listener and cancellation check of the search running now
+	private Consumer<SearchResult> searchProgress;
+	private BooleanSupplier searchCancelled;
+
+	// Moves played without searching while the game is still in the book, null for no book
+	private OpeningBook openingBook;
+	private final Random bookRandom = new Random();
+
+	// Exact results for endgames with few pieces left, null to search them like any other position
+	private Tablebase tablebase;
+
+	// Can be turned off to measure how much the move ordering saves
+	private boolean moveOrdering = true;
+
+	// Whether leaves are searched on until there are no captures left, rather than evaluated as they stand
+	private boolean quiescence = true;
+
+	// Selective search techniques, each can be turned off to measure what it saves or costs
+	private boolean nullMovePruning = true;
+	private boolean lateMoveReductions = true;
+	private boolean futilityPruning = true;
+	private boolean razoring = true;
 
 	public MinimaxAI(int m, Team t) {
+		this(m, t, DEFAULT_HASH_MEGABYTES);
+	}
+
+	public MinimaxAI(int m, Team t, int hashMegabytes) {
 		maxDepth = m;
 		team = t;
+		transpositionTable = new TranspositionTable(hashMegabytes);
+		searchers = new Searcher[] { new Searcher(0) };
+	}
+
+	// Replaces the transposition table with an empty one of the given size. Only call it between searches
+	public void setHashSize(int megabytes) {
+		transpositionTable = new TranspositionTable(megabytes);
+	}
+
+	// Sets how many threads search at once, including the calling thread
+	public void setThreads(int threads) {
+		if (threads < 1)
+			throw new IllegalArgumentException("Need at least one search thread");
+
+		if (helperPool != null)
+			helperPool.shutdownNow();
+
+		searchers = new Searcher[threads];
+		for (int i = 0; i < threads; i++)
+			searchers[i] = new Searcher(i);
+
+		helperPool = null;
+		if (threads > 1)
+			helperPool = Executors.newFixedThreadPool(threads - 1, runnable -> {
+				Thread thread = new Thread(runnable, "search helper");
+				thread.setDaemon(true);
+				return thread;
+			});
+	}
+
+	public int getThreads() {
+		return searchers.length;
+	}
+
+	// Book moves are played instead of searching whenever there are any, pass null to always search
+	public void setOpeningBook(OpeningBook book) {
+		openingBook = book;
+	}
+
+	// Won and lost positions in the tablebase are played from it without searching, and other positions stop
+	// searching where they reach it. Pass null to search everything
+	public void setTablebase(Tablebase tablebase) {
+		this.tablebase = tablebase;
+	}
+
+	// Changes which team the search picks moves for
+	public void setTeam(Team t) {
+		team = t;
+	}
+
+	public Team getTeam() {
+		return team;
+	}
+
+	// Limits how many nodes the calling thread searches, 0 for no limit. Checked as often as the clock is,
+	// so the search can go a little over
+	public void setNodeLimit(long nodes) {
+		if (nodes < 0)
+			throw new IllegalArgumentException("Node limit can't be negative");
+
+		nodeLimit = nodes;
+	}
+
+	// Called with the best line so far after each depth the calling thread finishes searching
+	public void setProgressListener(Consumer<SearchResult> listener) {
+		progressListener = listener;
+	}
+
+	public void setMoveOrdering(boolean enabled) {
+		moveOrdering = enabled;
+	}
+
+	public void setQuiescence(boolean enabled) {
+		quiescence = enabled;
+	}
+
+	public void setNullMovePruning(boolean enabled) {
+		nullMovePruning = enabled;
+	}
+
+	public void setLateMoveReductions(boolean enabled) {
+		lateMoveReductions = enabled;
+	}
+
+	public void setFutilityPruning(boolean enabled) {
+		futilityPruning = enabled;
+	}
+
+	public void setRazoring(boolean enabled) {
+		razoring = enabled;
 	}
 
 	// Return move that minimax algorithm wants to make by
 	// running minimax on all possible moves
 	public Move pickMove(Board board) {
-		int max = Integer.MIN_VALUE;
-		int current;
-		Move optimalMove = null;
-
-		for (Move move : board.generatePossibleMovesForTeam(team)) {
-			if (board.makeMove(move)) {
-				current = min(board, 1, Integer.MIN_VALUE, Integer.MAX_VALUE);
-				if (current >= max) {
-					optimalMove = move;
-					max = current;
-				}
+		return search(board).getBestMove();
+	}
 
-				board.reverseLastMove();
+	// Searches one ply deeper at a time until the time runs out, returning the best move from the
+	// deepest search that finished. Each search starts with the best move from the one before it
+	public Move pickMove(Board board, Duration timeLimit) {
+		return search(board, timeLimit).getBestMove();
+	}
+
+	// Same as pickMove, but also reports the score, principal variation and how much work it took
+	public SearchResult search(Board board) {
+		return search(board, maxDepth, null);
+	}
+
+	public SearchResult search(Board board, Duration timeLimit) {
+		return search(board, MAX_DEPTH, timeLimit);
+	}
+
+	// Searches up to the given depth, giving up when the time limit runs out if there is one
+	public SearchResult search(Board board, int depth, Duration timeLimit) {
+		startClock(depth, timeLimit);
+
+		return think(board, depth, progressListener, () -> false);
+	}
+
+	// Clears any stop and sets the time limit on the calling thread, before the search is handed to another, so a
+	// stop or ponderhit that comes before the search has started isn't undone when it does
+	private void startClock(int depth, Duration timeLimit) {
+		if (depth < 1 || depth > MAX_DEPTH)
+			throw new IllegalArgumentException("Search depth must be between 1 and " + MAX_DEPTH);
+
+		stopRequested = false;
+		timed = timeLimit != null;
+		if (timed)
+			deadline = System.nanoTime() + timeLimit.toNanos();
+	}
+
+	// Searches a copy of the board on a thread of its own, so the caller can carry on while it thinks.
+	// Cancelling the future stops the search at its next check of the clock
+	public CompletableFuture<Move> pickMoveAsync(Board board) {
+		return pickMoveAsync(board, result -> {
+		});
+	}
+
+	// Same as pickMoveAsync, also passing the best line so far to the listener after each depth, on the search thread
+	public CompletableFuture<Move> pickMoveAsync(Board board, Consumer<SearchResult> progress) {
+		return submit(board, maxDepth, null, progress, SearchResult::getBestMove);
+	}
+
+	// Same as pickMoveAsync, but the future gives the whole result, whose principal variation says what reply to expect
+	public CompletableFuture<SearchResult> searchAsync(Board board, Consumer<SearchResult> progress) {
+		return submit(board, maxDepth, null, progress, result -> result);
+	}
+
+	// Same as above, up to the given depth and giving up when the time limit runs out if there is one, for stop and
+	// setTimeLimit to control from the calling thread
+	public CompletableFuture<SearchResult> searchAsync(Board board, int depth, Duration timeLimit,
+			Consumer<SearchResult> progress) {
+		return submit(board, depth, timeLimit, progress, result -> result);
+	}
+
+	// Futures are completed directly rather than derived from one another, since cancelling a derived future
+	// wouldn't reach the search
+	private synchronized <T> CompletableFuture<T> submit(Board board, int depth, Duration timeLimit,
+			Consumer<SearchResult> progress, Function<SearchResult, T> answer) {
+		CompletableFuture<T> future = new CompletableFuture<>();
+		Board copy = new Board(board);
+
+		startClock(depth, timeLimit);
+
+		if (asyncExecutor == null)
+			asyncExecutor = Executors.newSingleThreadExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "search");
+				thread.setDaemon(true);
+				return thread;
+			});
+
+		asyncExecutor.execute(() -> {
+			if (future.isDone())
+				return;
+
+			try {
+				future.complete(answer.apply(think(copy, depth, progress, future::isCancelled)));
+			} catch (RuntimeException e) {
+				future.completeExceptionally(e);
 			}
+		});
+
+		return future;
+	}
+
+	// Ends a search running on another thread as soon as it has a move, which it returns as usual. A stop that comes
+	// after the search was started or submitted counts even if it hasn't begun running yet, and the next search
+	// clears one that comes after it has finished
+	public void stop() {
+		stopRequested = true;
+	}
+
+	// Gives a running search a time limit counted from now, as when pondering on the opponent's time turns into
+	// searching for real
+	public void setTimeLimit(Duration timeLimit) {
+		deadline = System.nanoTime() + timeLimit.toNanos();
+		timed = true;
+	}
+
+	private SearchResult think(Board board, int depth, Consumer<SearchResult> progress, BooleanSupplier cancelled) {
+		long start = System.nanoTime();
+
+		if (openingBook != null && board.getSideToMove() == team) {
+			int bookMove = openingBook.pickMove(board, bookRandom);
+
+			if (bookMove != PackedMove.NONE)
+				return new SearchResult(List.of(PackedMove.toMove(bookMove)), new int[] { bookMove }, 0, 0, 0,
+						System.nanoTime() - start);
+		}
+
+		if (tablebase != null && board.getSideToMove() == team) {
+			SearchResult solved = tablebaseResult(board, start);
+
+			if (solved != null) {
+				if (progress != null)
+					progress.accept(solved);
+
+				return solved;
+			}
+		}
+
+		stopped = false;
+		searchProgress = progress;
+		searchCancelled = cancelled;
+		transpositionTable.newSearch();
+
+		for (Searcher searcher : searchers)
+			searcher.newSearch();
+
+		List<Future<?>> helpers = new ArrayList<>();
+		for (int i = 1; i < searchers.length; i++) {
+			Searcher helper = searchers[i];
+			Board copy = new Board(board);
+			helpers.add(helperPool.submit(() -> helper.iterate(copy, depth, start)));
+		}
+
+		Searcher main = searchers[0];
+
+		try {
+			main.iterate(board, depth, start);
+		} finally {
+			stopped = true;
 		}
-		
-		board.clearCache();
-		return optimalMove;
+
+		waitForHelpers(helpers);
+
+		return main.createResult(start);
 	}
 
-	// For all moves the opposing team could make, return least optimal for the AI
-	private int min(Board board, int depth, int alpha, int beta) {
-		if (depth == maxDepth)
-			return board.generateHeuristicValue(team);
+	// A won or lost position answered from the tablebase, with the line both sides play when the winner mates as
+	// quickly as it can and the loser holds out as long as it can. Null for drawn positions, which are searched so the
+	// engine still plays for mistakes, and positions the tablebase can't look up
+	private SearchResult tablebaseResult(Board board, long start) {
+		int value = tablebase.probe(board);
 
-		for (Move move : board.generatePossibleMovesForTeam(Team.otherTeam(team))) {
-			if (board.makeMove(move)) {
-				beta = Math.min(max(board, depth + 1, alpha, beta), beta);
-				board.reverseLastMove();
+		if (value == Tablebase.UNKNOWN || value == Tablebase.DRAW)
+			return null;
+
+		Board line = new Board(board);
+		int[] moves = new int[PackedMove.MAX_MOVES];
+		int[] principalVariation = new int[MAX_PLY];
+		int length = 0;
+
+		for (int move = bestTablebaseMove(line, moves); move != PackedMove.NONE && length < MAX_PLY;
+				move = bestTablebaseMove(line, moves)) {
+			principalVariation[length++] = move;
+			line.makeMove(move);
+		}
+
+		if (length == 0)
+			return null;
+
+		List<Move> principalMoves = new ArrayList<>();
+		for (int i = 0; i < length; i++)
+			principalMoves.add(PackedMove.toMove(principalVariation[i]));
+
+		return new SearchResult(principalMoves, Arrays.copyOf(principalVariation, length),
+				tablebaseScore(value, 0), Tablebase.plies(value), 0, System.nanoTime() - start);
+	}
+
+	// The legal move leading to the position the tablebase ranks best for the side to move, or PackedMove.NONE if
+	// there are no moves or none lead to a position it has
+	private int bestTablebaseMove(Board board, int[] moves) {
+		int count = board.generateMoves(board.getSideToMove(), moves);
+		int bestMove = PackedMove.NONE;
+		int bestRank = Integer.MIN_VALUE;
+
+		for (int i = 0; i < count; i++) {
+			board.makeMove(moves[i]);
+			int child = tablebase.probe(board);
+			board.reverseLastMove();
+
+			if (child != Tablebase.UNKNOWN && Tablebase.rank(child) > bestRank) {
+				bestRank = Tablebase.rank(child);
+				bestMove = moves[i];
 			}
-			
-			if (alpha >= beta)
-				break;
 		}
 
-		return beta;
+		return bestMove;
+	}
+
+	// A tablebase value as a search score, mates counted from the root like the ones the search finds
+	private static int tablebaseScore(int value, int ply) {
+		if (Tablebase.isWin(value))
+			return MATE - ply - Tablebase.plies(value);
+		if (Tablebase.isLoss(value))
+			return -MATE + ply + Tablebase.plies(value);
+
+		return 0;
+	}
+
+	private void waitForHelpers(List<Future<?>> helpers) {
+		try {
+			for (Future<?> helper : helpers)
+				helper.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Search helper failed", e.getCause());
+		}
 	}
 
-	// For all moves the AI could make, return most optimal
-	private int max(Board board, int depth, int alpha, int beta) {
-		if (depth == maxDepth)
-			return board.generateHeuristicValue(team);
+	// Nodes searched by every thread during the last search
+	public long getNodes() {
+		long nodes = 0;
+
+		for (Searcher searcher : searchers)
+			nodes += searcher.nodes;
+
+		return nodes;
+	}
+
+	// Depth reached by the calling thread, and node and cutoff counts from every thread, during the last search
+	public SearchStatistics getStatistics() {
+		long quiescenceNodes = 0, cutoffs = 0, firstMoveCutoffs = 0, pawnHits = 0, pawnMisses = 0;
+
+		for (Searcher searcher : searchers) {
+			quiescenceNodes += searcher.quiescenceNodes;
+			cutoffs += searcher.cutoffs;
+			firstMoveCutoffs += searcher.firstMoveCutoffs;
+			pawnHits += searcher.pawnTable.getHits();
+			pawnMisses += searcher.pawnTable.getMisses();
+		}
+
+		return new SearchStatistics(searchers[0].completedDepth, getNodes(), quiescenceNodes, cutoffs,
+				firstMoveCutoffs, pawnHits, pawnMisses);
+	}
+
+	public TranspositionTable getTranspositionTable() {
+		return transpositionTable;
+	}
+
+	// Search state belonging to a single thread
+	private class Searcher {
+		private final int id;
+
+		// One move buffer per ply, allocated up front so searching doesn't allocate
+		private final int[][] moveBuffers;
+
+		// Triangular table of principal variations, the line starting at each ply is stored in that ply's row
+		private final int[][] principalVariations;
+		private final int[] principalVariationLengths;
+
+		private final MovePicker movePicker;
+		private final PawnTable pawnTable;
+
+		// Depth the current iteration goes to
+		private int depthLimit;
+
+		// Principal variation and score of the deepest iteration that finished
+		private final int[] result;
+		private int resultLength;
+		private int resultScore;
+		private int completedDepth;
+
+		// Every node searched, and how many of those were in quiescence search
+		private long nodes, quiescenceNodes;
+		private long cutoffs, firstMoveCutoffs;
+
+		Searcher(int id) {
+			this.id = id;
+			moveBuffers = new int[MAX_PLY][PackedMove.MAX_MOVES];
+			principalVariations = new int[MAX_PLY][MAX_PLY];
+			principalVariationLengths = new int[MAX_PLY];
+			movePicker = new MovePicker(MAX_PLY);
+			pawnTable = new PawnTable(PAWN_TABLE_ENTRIES);
+			result = new int[MAX_PLY];
+		}
+
+		void newSearch() {
+			nodes = 0;
+			quiescenceNodes = 0;
+			cutoffs = 0;
+			firstMoveCutoffs = 0;
+			completedDepth = 0;
+			resultLength = 0;
+			resultScore = 0;
+			movePicker.newSearch();
+			pawnTable.resetCounts();
+		}
+
+		// Searches one ply deeper at a time up to the given depth, or until stopped.
+		// Odd numbered helpers start a ply deeper so the threads aren't all searching the same depth
+		void iterate(Board board, int lastDepth, long start) {
+			for (int depth = 1 + (id & 1); depth <= lastDepth && !stopped; depth++) {
+				int score = aspirationSearch(board, depth, resultScore);
+
+				if (isStopped() || principalVariationLengths[0] == 0)
+					break;
+
+				resultScore = score;
+				resultLength = principalVariationLengths[0];
+				System.arraycopy(principalVariations[0], 0, result, 0, resultLength);
+				completedDepth = depth;
+
+				if (id == 0 && searchProgress != null)
+					searchProgress.accept(createResult(start));
+
+				// The next search takes several times longer than every search so far, so don't start one that can't finish
+				if (id == 0 && timed && System.nanoTime() - start > (deadline - start) / 2)
+					break;
+			}
+		}
+
+		SearchResult createResult(long start) {
+			List<Move> principalVariation = new ArrayList<>();
+			for (int i = 0; i < resultLength; i++)
+				principalVariation.add(PackedMove.toMove(result[i]));
+
+			return new SearchResult(principalVariation, Arrays.copyOf(result, resultLength), resultScore,
+					completedDepth, getNodes(), System.nanoTime() - start);
+		}
+
+		// Searches a window around the last iteration's score, widening it whenever the score falls outside
+		private int aspirationSearch(Board board, int depth, int guess) {
+			depthLimit = depth;
+
+			if (depth < ASPIRATION_DEPTH)
+				return negamax(board, 0, depth, -INFINITY, INFINITY, team, true);
+
+			int window = ASPIRATION_WINDOW;
+			int alpha = Math.max(guess - window, -INFINITY);
+			int beta = Math.min(guess + window, INFINITY);
+
+			while (true) {
+				int score = negamax(board, 0, depth, alpha, beta, team, true);
+
+				if (isStopped())
+					return 0;
+
+				window *= 2;
+
+				if (score <= alpha)
+					alpha = Math.max(score - window, -INFINITY);
+				else if (score >= beta)
+					beta = Math.min(score + window, INFINITY);
+				else
+					return score;
+			}
+		}
+
+		// Only the calling thread watches the clock, node limit, stop requests and cancellation, and only after the first depth so
+		// there's always a move to return. Helpers stop when it does
+		private boolean isStopped() {
+			if (id != 0)
+				return stopped;
+
+			if (depthLimit > 1 && !stopped && nodes % NODES_BETWEEN_TIME_CHECKS == 0)
+				stopped = stopRequested || searchCancelled.getAsBoolean() || (timed && System.nanoTime() > deadline)
+						|| (nodeLimit > 0 && nodes >= nodeLimit);
+
+			return depthLimit > 1 && stopped;
+		}
+
+		// Returns the best score the mover can get from this position, searching depth plies further.
+		// A null move isn't allowed straight after another, or the search could pass forever
+		private int negamax(Board board, int ply, int depth, int alpha, int beta, Team mover, boolean nullAllowed) {
+			principalVariationLengths[ply] = 0;
+
+			if (depth <= 0 || ply >= MAX_PLY - 1)
+				return evaluateLeaf(board, ply, alpha, beta, mover);
+
+			nodes++;
+
+			if (isStopped())
+				return 0;
+
+			// Repeating a position or running out the fifty move clock is a draw however good the position looks
+			if (ply > 0 && (board.isRepetition() || board.getHalfmoveClock() >= Board.FIFTY_MOVE_PLIES))
+				return 0;
+
+			// Nothing left to search once the tablebase knows the result
+			int tablebaseValue = ply > 0 && tablebase != null ? tablebase.probe(board) : Tablebase.UNKNOWN;
+			if (tablebaseValue != Tablebase.UNKNOWN)
+				return tablebaseScore(tablebaseValue, ply);
+
+			long hash = board.getHash();
+			long entry = transpositionTable.probe(hash);
+			int hashMove = TranspositionTable.moveOf(entry);
+
+			// The root always searches, so there's a principal variation to return
+			if (ply > 0 && entry != 0 && TranspositionTable.depthOf(entry) >= depth) {
+				int score = scoreFromTable(TranspositionTable.scoreOf(entry), ply);
+				int bound = TranspositionTable.boundOf(entry);
+
+				if (bound == TranspositionTable.EXACT)
+					return score;
+				if (bound == TranspositionTable.LOWER_BOUND && score >= beta)
+					return score;
+				if (bound == TranspositionTable.UPPER_BOUND && score <= alpha)
+					return score;
+			}
+
+			Team opponent = Team.otherTeam(mover);
+			boolean inCheck = board.isChecked(mover);
+			boolean principalNode = beta - alpha > 1;
+			boolean selective = ply > 0 && !principalNode && !inCheck;
+			int staticValue = board.generateHeuristicValue(mover, pawnTable);
+
+			// Razoring, a position well below alpha one ply from the leaves is unlikely to recover with a quiet move
+			if (razoring && selective && depth == 1 && staticValue + RAZOR_MARGIN <= alpha) {
+				int score = evaluateLeaf(board, ply, alpha, beta, mover);
+				if (score <= alpha)
+					return score;
+			}
+
+			// Null move pruning, if passing still scores above beta then a real move would too. Positions with only
+			// pawns left are skipped, since there the mover often would rather pass (zugzwang)
+			if (nullMovePruning && selective && nullAllowed && depth >= NULL_MOVE_MIN_DEPTH && staticValue >= beta
+					&& board.hasPiecesOtherThanPawns(mover)) {
+				int reduction = NULL_MOVE_REDUCTION + (depth > 6 ? 1 : 0);
+
+				board.makeNullMove();
+				int score = -negamax(board, ply + 1, depth - 1 - reduction, -beta, -beta + 1, opponent, false);
+				board.reverseNullMove();
+
+				if (isStopped())
+					return 0;
+
+				// A mate found after passing isn't a real mate, so don't report it as one
+				if (score >= beta)
+					return score > MATE_BOUND ? beta : score;
+			}
+
+			// Search last iteration's best move first at the root
+			if (ply == 0 && resultLength > 0)
+				hashMove = result[0];
+
+			int[] moves = moveBuffers[ply];
+			int count = board.generateMoves(mover, moves);
+
+			// No moves means checkmate or stalemate
+			if (count == 0)
+				return inCheck ? -MATE + ply : 0;
+
+			int originalAlpha = alpha;
+			int bestScore = -INFINITY;
+			int bestMove = PackedMove.NONE;
+
+			// Futility pruning, near the leaves a quiet move can't make up a big enough gap to alpha
+			boolean futile = futilityPruning && selective && depth <= FUTILITY_MAX_DEPTH
+					&& staticValue + FUTILITY_MARGIN * depth <= alpha;
+
+			orderMoves(ply, moves, count, hashMove, mover);
+
+			for (int i = 0; i < count; i++) {
+				int move = nextMove(ply, moves, count, i);
+				boolean quiet = !PackedMove.isCapture(move) && PackedMove.promotion(move) == PieceType.NONE;
+				int score;
+
+				board.makeMove(move);
+				boolean givesCheck = board.isChecked(opponent);
+
+				if (futile && i > 0 && quiet && !givesCheck) {
+					board.reverseLastMove();
+					continue;
+				}
+
+				// Late move reductions, moves ordered this late rarely matter so they start off searched shallower
+				int reduction = 0;
+				if (lateMoveReductions && i >= LATE_MOVE_INDEX && depth >= LATE_MOVE_MIN_DEPTH && quiet && !inCheck
+						&& !givesCheck)
+					reduction = i >= 2 * LATE_MOVE_INDEX + 2 && depth >= 6 ? 2 : 1;
+
+				// Later moves only need proving worse than the best so far, which a null window does cheaply.
+				// If one turns out better it's searched again with the full window to get its real score
+				if (i == 0)
+					score = -negamax(board, ply + 1, depth - 1, -beta, -alpha, opponent, true);
+				else {
+					score = -negamax(board, ply + 1, depth - 1 - reduction, -alpha - 1, -alpha, opponent, true);
+
+					if (reduction > 0 && score > alpha)
+						score = -negamax(board, ply + 1, depth - 1, -alpha - 1, -alpha, opponent, true);
+
+					if (score > alpha && score < beta)
+						score = -negamax(board, ply + 1, depth - 1, -beta, -alpha, opponent, true);
+				}
 
-		for (Move move : board.generatePossibleMovesForTeam(team)) {
-			if (board.makeMove(move)) {
-				alpha = Math.max(min(board, depth + 1, alpha, beta), alpha);
 				board.reverseLastMove();
+
+				if (isStopped())
+					return 0;
+
+				if (score > bestScore) {
+					bestScore = score;
+					bestMove = move;
+
+					if (score > alpha) {
+						alpha = score;
+						updatePrincipalVariation(ply, move);
+					}
+				}
+
+				if (alpha >= beta) {
+					recordCutoff(ply, move, i, mover);
+					break;
+				}
 			}
 
-			if (alpha >= beta)
-				break;
+			int bound = TranspositionTable.EXACT;
+			if (bestScore >= beta)
+				bound = TranspositionTable.LOWER_BOUND;
+			else if (bestScore <= originalAlpha)
+				bound = TranspositionTable.UPPER_BOUND;
+
+			transpositionTable.store(hash, depth, scoreToTable(bestScore, ply), bound, bestMove);
+
+			return bestScore;
+		}
+
+		private int evaluateLeaf(Board board, int ply, int alpha, int beta, Team mover) {
+			if (quiescence)
+				return quiesce(board, ply, alpha, beta, mover);
+
+			nodes++;
+			return board.generateHeuristicValue(mover, pawnTable);
 		}
 
-		return alpha;
+		// Searches captures until the position is quiet, so the heuristic isn't taken while a piece is hanging.
+		// The mover can stand pat on the heuristic value instead of capturing, unless it's in check
+		private int quiesce(Board board, int ply, int alpha, int beta, Team mover) {
+			nodes++;
+			quiescenceNodes++;
+
+			if (isStopped())
+				return 0;
+
+			// Captures often lead into the tablebase, which is exact where the heuristic is a guess
+			int tablebaseValue = tablebase != null ? tablebase.probe(board) : Tablebase.UNKNOWN;
+			if (tablebaseValue != Tablebase.UNKNOWN)
+				return tablebaseScore(tablebaseValue, ply);
+
+			int standPat = board.generateHeuristicValue(mover, pawnTable);
+			boolean inCheck = board.isChecked(mover);
+			int bestScore = -INFINITY;
+
+			if (ply >= MAX_PLY - 1)
+				return standPat;
+
+			if (!inCheck) {
+				if (standPat >= beta)
+					return standPat;
+
+				bestScore = standPat;
+				if (standPat > alpha)
+					alpha = standPat;
+			}
+
+			int[] moves = moveBuffers[ply];
+			int count = inCheck ? board.generateMoves(mover, moves) : board.generateCaptures(mover, moves);
+
+			if (inCheck && count == 0)
+				return -MATE + ply;
+
+			Team opponent = Team.otherTeam(mover);
+			orderMoves(ply, moves, count, PackedMove.NONE, mover);
+
+			for (int i = 0; i < count; i++) {
+				int move = nextMove(ply, moves, count, i);
+
+				// Delta pruning, skip captures that couldn't raise alpha even with a positional bonus
+				if (!inCheck && standPat + materialGain(move) + DELTA_MARGIN <= alpha)
+					continue;
+
+				board.makeMove(move);
+				int score = -quiesce(board, ply + 1, -beta, -alpha, opponent);
+				board.reverseLastMove();
+
+				if (isStopped())
+					return 0;
+
+				if (score > bestScore) {
+					bestScore = score;
+					if (score > alpha)
+						alpha = score;
+				}
+
+				if (alpha >= beta)
+					break;
+			}
+
+			return bestScore;
+		}
+
+		// Material the mover wins with a capture or promotion
+		private int materialGain(int move) {
+			int gain = Board.pieceValue(PackedMove.captured(move));
+
+			if (PackedMove.promotion(move) != PieceType.NONE)
+				gain += Board.pieceValue(PackedMove.promotion(move)) - Board.pieceValue(PieceType.PAWN);
+
+			return gain;
+		}
+
+		// The principal variation from a ply is its best move followed by the one from the next ply
+		private void updatePrincipalVariation(int ply, int move) {
+			int[] line = principalVariations[ply];
+			int childLength = principalVariationLengths[ply + 1];
+
+			line[0] = move;
+			System.arraycopy(principalVariations[ply + 1], 0, line, 1, childLength);
+			principalVariationLengths[ply] = childLength + 1;
+		}
+
+		// Mate scores are stored relative to the node rather than the root, so they stay right wherever it's reached
+		private int scoreToTable(int score, int ply) {
+			if (score > MATE_BOUND)
+				return score + ply;
+			if (score < -MATE_BOUND)
+				return score - ply;
+
+			return score;
+		}
+
+		private int scoreFromTable(int score, int ply) {
+			if (score > MATE_BOUND)
+				return score - ply;
+			if (score < -MATE_BOUND)
+				return score + ply;
+
+			return score;
+		}
+
+		private void orderMoves(int ply, int[] moves, int count, int hashMove, Team mover) {
+			if (moveOrdering)
+				movePicker.scoreMoves(ply, moves, count, hashMove, mover.ordinal());
+		}
+
+		private int nextMove(int ply, int[] moves, int count, int index) {
+			if (moveOrdering)
+				return movePicker.pickNext(ply, moves, count, index);
+
+			return moves[index];
+		}
+
+		private void recordCutoff(int ply, int move, int index, Team mover) {
+			cutoffs++;
+			if (index == 0)
+				firstMoveCutoffs++;
+
+			if (moveOrdering)
+				movePicker.recordCutoff(ply, move, mover.ordinal(), depthLimit - ply);
+		}
 	}
 }
@@ -8,57 +8,37 @@ public class Move implements Serializable {
 	private final Position start;
 	private final Position end;
 
+	// Piece type a pawn is promoted to, PieceType.NONE to leave it to the board, which picks a queen
+	private final int promotion;
+
 	public Move(Position s, Position e) {
+		this(s, e, PieceType.NONE);
+	}
+
+	Move(Position s, Position e, int promotion) {
 		start = s;
-		end = e;	
+		end = e;
+		this.promotion = promotion;
 	}
 
 	// Example: drawPath((1, 1), (4, 4)) returns [(2, 2), (3, 3)]
 	public List<Position> drawPath() {
 		List<Position> path = new ArrayList<>();
-		MovementType movementType = getMovementType();
-		
-		// Not necessary for horse, return empty list
-		if (movementType == MovementType.HORSE)
-			return path;
-
-		int rowIncrement = getIncrementValues(movementType)[0] * getRowDirection();
-		int columnIncrement = getIncrementValues(movementType)[1] * getColumnDirection();
-
-		int rowOffset = rowIncrement;
-		int columnOffset = columnIncrement;
-
-		// Draw path until we reach end position
-		while (start.row() + rowOffset != end.row() || start.column() + columnOffset != end.column()) {
-			path.add(new Position(start.row() + rowOffset, start.column() + columnOffset));
-
-			rowOffset += rowIncrement;
-			columnOffset += columnIncrement;
+		int startSquare = Bitboards.square(start.row(), start.column());
+		int endSquare = Bitboards.square(end.row(), end.column());
+		long between = Attacks.between(startSquare, endSquare);
+
+		// Empty for horse moves since they jump over pieces. Walk from the start towards the end
+		while (between != 0) {
+			int square = startSquare < endSquare ? Long.numberOfTrailingZeros(between)
+					: 63 - Long.numberOfLeadingZeros(between);
+			path.add(new Position(Bitboards.row(square), Bitboards.column(square)));
+			between &= ~Bitboards.bit(square);
 		}
 
 		return path;
 	}
 
-	// Returns 1 if piece moved down, -1 if moved up, 0 if piece didn't change row
-	private int getRowDirection() {
-		if (end.row() - start.row() > 0)
-			return 1;
-		else if (end.row() - start.row() < 0)
-			return -1;
-		else
-			return 0;
-	}
-
-	// Returns 1 if piece moved right, -1 if moved left, 0 if piece didn't change column
-	private int getColumnDirection() {
-		if (end.column() - start.column() > 0)
-			return 1;
-		else if (end.column() - start.column() < 0)
-			return -1;
-		else
-			return 0;
-	}
-
 	public Position destination() {
 		return end;
 	}
@@ -67,39 +47,8 @@ public class Move implements Serializable {
 		return start;
 	}
 
-	private MovementType getMovementType() {
-		if (Math.abs(start.row() - end.row()) == Math.abs(start.column() - end.column()))
-			return MovementType.DIAGONAL;
-		if (start.row() == end.row())
-			return MovementType.HORIZONTAL;
-		if (start.column() == end.column())
-			return MovementType.VERTICAL;
-
-		return MovementType.HORSE;
-	}
-
-	// Returns the change in co-ordinates that came from a movement
-	private int[] getIncrementValues(MovementType movement) {
-		int rowIncrement = 0;
-		int columnIncrement = 0;
-
-		switch (movement) {
-
-		case DIAGONAL:
-			rowIncrement = 1;
-			columnIncrement = 1;
-			break;
-		case HORIZONTAL:
-			columnIncrement = 1;
-			break;
-		case VERTICAL:
-			rowIncrement = 1;
-			break;
-		default:
-			throw new AssertionError("Enum doesn't seem to match with any supported types");
-		}
-
-		return new int[] { rowIncrement, columnIncrement };
+	int promotion() {
+		return promotion;
 	}
 
 	@Override
@@ -121,8 +70,4 @@ public class Move implements Serializable {
 	public String toString() {
 		return start.toString() + " to " + end.toString();
 	}
-
-	enum MovementType {
-		DIAGONAL, HORIZONTAL, VERTICAL, HORSE
-	}
 }
@@ -0,0 +1,106 @@
+package chess;
+
+/*
+ * Orders moves so alpha beta pruning sees the best ones first. Moves are handed out in stages:
+ * the hash move, then captures and promotions by most valuable victim / least valuable attacker,
+ * then the killer moves for the ply, then the remaining quiet moves by their history score.
+ * Each call to pickNext only selects one move, so nodes that cut off early never sort the rest.
+ */
+class MovePicker {
+	private static final int HASH_MOVE_SCORE = 1 << 30;
+	private static final int CAPTURE_SCORE = 1 << 28;
+	private static final int KILLER_SCORE = 1 << 26;
+
+	// History scores are halved once any reaches this, so they stay below the killer stage
+	private static final int HISTORY_LIMIT = 1 << 20;
+
+	// Sort key for each move in each ply's buffer
+	private final int[][] scores;
+
+	// Two quiet moves per ply that recently caused a cutoff
+	private final int[][] killers;
+
+	// How often each quiet move has caused a cutoff, weighted by depth, indexed by team, start and destination
+	private final int[][][] history;
+
+	MovePicker(int maxPly) {
+		scores = new int[maxPly][PackedMove.MAX_MOVES];
+		killers = new int[maxPly][2];
+		history = new int[2][64][64];
+	}
+
+	// Scores a ply's moves ready for pickNext
+	void scoreMoves(int ply, int[] moves, int count, int hashMove, int team) {
+		int[] plyScores = scores[ply];
+
+		for (int i = 0; i < count; i++) {
+			int move = moves[i];
+
+			if (move == hashMove)
+				plyScores[i] = HASH_MOVE_SCORE;
+			else if (PackedMove.isCapture(move) || PackedMove.promotion(move) != PieceType.NONE)
+				plyScores[i] = CAPTURE_SCORE + PackedMove.captured(move) * 8 + PackedMove.promotion(move) * 8
+						- PackedMove.moved(move);
+			else if (move == killers[ply][0])
+				plyScores[i] = KILLER_SCORE + 1;
+			else if (move == killers[ply][1])
+				plyScores[i] = KILLER_SCORE;
+			else
+				plyScores[i] = history[team][PackedMove.start(move)][PackedMove.destination(move)];
+		}
+	}
+
+	// Swaps the best of the moves not yet picked into position index and returns it
+	int pickNext(int ply, int[] moves, int count, int index) {
+		int[] plyScores = scores[ply];
+		int best = index;
+
+		for (int i = index + 1; i < count; i++)
+			if (plyScores[i] > plyScores[best])
+				best = i;
+
+		int move = moves[best];
+		moves[best] = moves[index];
+		moves[index] = move;
+
+		int score = plyScores[best];
+		plyScores[best] = plyScores[index];
+		plyScores[index] = score;
+
+		return move;
+	}
+
+	// Remembers a quiet move that caused a cutoff, so it's tried early in sibling positions
+	void recordCutoff(int ply, int move, int team, int depth) {
+		if (PackedMove.isCapture(move) || PackedMove.promotion(move) != PieceType.NONE)
+			return;
+
+		if (killers[ply][0] != move) {
+			killers[ply][1] = killers[ply][0];
+			killers[ply][0] = move;
+		}
+
+		int[] fromStart = history[team][PackedMove.start(move)];
+		fromStart[PackedMove.destination(move)] += depth * depth;
+
+		if (fromStart[PackedMove.destination(move)] >= HISTORY_LIMIT)
+			ageHistory();
+	}
+
+	// Forgets killers and fades the history, so a new search isn't ruled by what mattered in an old position
+	void newSearch() {
+		for (int[] plyKillers : killers) {
+			plyKillers[0] = PackedMove.NONE;
+			plyKillers[1] = PackedMove.NONE;
+		}
+
+		ageHistory();
+	}
+
+	private void ageHistory() {
+		for (int[][] teamHistory : history)
+			for (int[] fromStart : teamHistory)
+				for (int i = 0; i < fromStart.length; i++)
+					fromStart[i] /= 2;
+	}
+}
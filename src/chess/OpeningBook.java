@@ -0,0 +1,138 @@
+package chess;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+/*
+ * Opening moves read from a book file, which is memory mapped rather than read, so only the pages a lookup touches
+ * are loaded and none of it goes on the heap.
+ * After a 16 byte header, "CHOB", a version and 8 unused bytes, the file is laid out like a Polyglot book, 16 byte big
+ * endian entries sorted by key as an unsigned number:
+ *
+ *   long   Zobrist hash of the position, as Board computes it rather than Polyglot's keys
+ *   short  the move, destination square in bits 0-5, start square in bits 6-11, and in bits 12-14 any promotion,
+ *          1 for a knight up to 4 for a queen
+ *   short  weight, how likely the move is to be picked compared to the others from the same position
+ *   int    unused, 0
+ *
+ * A position's moves are next to each other, found with a binary search for the first of them. The version goes up
+ * whenever Board's hashes change, since a book's keys are only any use with the hashes it was built with.
+ */
+public class OpeningBook {
+	static final int ENTRY_BYTES = 16;
+
+	static final int MAGIC = 0x43484F42;
+	static final int VERSION = 1;
+	static final int HEADER_BYTES = 16;
+
+	private final MappedByteBuffer entries;
+	private final int size;
+
+	private OpeningBook(MappedByteBuffer entries) {
+		this.entries = entries;
+		size = entries.capacity() / ENTRY_BYTES;
+	}
+
+	public static OpeningBook open(Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			long length = channel.size();
+
+			if (length < HEADER_BYTES || (length - HEADER_BYTES) % ENTRY_BYTES != 0 || length > Integer.MAX_VALUE)
+				throw new IOException(path + " isn't an opening book");
+
+			// Books from before the header have a hash where the magic number goes
+			ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+			if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION)
+				throw new IOException(path + " isn't an opening book of version " + VERSION
+						+ ", build it again with OpeningBookBuilder");
+
+			// The mapping stays valid after the channel is closed
+			return new OpeningBook(channel.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES, length - HEADER_BYTES));
+		}
+	}
+
+	// Number of moves in the book, over every position
+	public int size() {
+		return size;
+	}
+
+	// Fills the arrays with the book's legal moves for the side to move and their weights, returning how many there
+	// are. Moves that aren't legal, as when another position has the same hash, are left out
+	int getMoves(Board board, int[] moves, int[] weights) {
+		int[] legalMoves = new int[PackedMove.MAX_MOVES];
+		int legalCount = board.generateMoves(board.getSideToMove(), legalMoves);
+		long key = board.getHash();
+		int count = 0;
+
+		for (int i = firstEntry(key); i < size && keyAt(i) == key && count < moves.length; i++) {
+			int bookMove = entries.getShort(i * ENTRY_BYTES + 8) & 0xFFFF;
+
+			for (int j = 0; j < legalCount; j++)
+				if (encodeMove(legalMoves[j]) == bookMove) {
+					moves[count] = legalMoves[j];
+					weights[count++] = entries.getShort(i * ENTRY_BYTES + 10) & 0xFFFF;
+					break;
+				}
+		}
+
+		return count;
+	}
+
+	// Picks one of the book's moves at random, more often the higher its weight, or returns PackedMove.NONE if the
+	// position isn't in the book
+	int pickMove(Board board, Random random) {
+		int[] moves = new int[PackedMove.MAX_MOVES];
+		int[] weights = new int[PackedMove.MAX_MOVES];
+		int count = getMoves(board, moves, weights);
+		int total = 0;
+
+		for (int i = 0; i < count; i++)
+			total += weights[i];
+
+		if (total == 0)
+			return PackedMove.NONE;
+
+		int pick = random.nextInt(total);
+
+		for (int i = 0; i < count; i++) {
+			pick -= weights[i];
+			if (pick < 0)
+				return moves[i];
+		}
+
+		throw new AssertionError("Weights don't seem to add up to their total");
+	}
+
+	// Index of the first entry with a key at least as large, or size if there isn't one
+	private int firstEntry(long key) {
+		int low = 0, high = size;
+
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+
+			if (Long.compareUnsigned(keyAt(middle), key) < 0)
+				low = middle + 1;
+			else
+				high = middle;
+		}
+
+		return low;
+	}
+
+	private long keyAt(int index) {
+		return entries.getLong(index * ENTRY_BYTES);
+	}
+
+	// A move as the book stores it
+	static int encodeMove(int move) {
+		int promotion = PackedMove.promotion(move);
+
+		return PackedMove.destination(move) | (PackedMove.start(move) << 6)
+				| (promotion == PieceType.NONE ? 0 : (promotion - 1) << 12);
+	}
+}
@@ -0,0 +1,148 @@
+package chess;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * Compiles an opening book from the games in a PGN file. Every move in the first few plies of each game is counted,
+ * scoring 2 when the side that made it went on to win, 1 for a draw or unfinished game and 0 for a loss, as Polyglot
+ * does. Moves played in too few games are left out, and each position's weights are its moves' scores.
+ * Usage: OpeningBookBuilder <pgn file> <book file> [plies] [minimum games] [threads]
+ */
+public class OpeningBookBuilder {
+	private static final int DEFAULT_PLIES = 20;
+	private static final int DEFAULT_MINIMUM_GAMES = 2;
+
+	private static final int MAX_WEIGHT = 0xFFFF;
+
+	private final int plies;
+	private final int minimumGames;
+
+	// Games and total score for each move, by position hash then book move
+	private final Map<Long, Map<Integer, int[]>> positions = new HashMap<>();
+
+	public OpeningBookBuilder(int plies, int minimumGames) {
+		this.plies = plies;
+		this.minimumGames = minimumGames;
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2) {
+			System.out.println("Usage: OpeningBookBuilder <pgn file> <book file> [plies] [minimum games] [threads]");
+			return;
+		}
+
+		int plies = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_PLIES;
+		int minimumGames = args.length > 3 ? Integer.parseInt(args[3]) : DEFAULT_MINIMUM_GAMES;
+		int threads = args.length > 4 ? Integer.parseInt(args[4]) : Runtime.getRuntime().availableProcessors();
+
+		OpeningBookBuilder builder = new OpeningBookBuilder(plies, minimumGames);
+		long start = System.nanoTime();
+		long games;
+
+		try (PgnReader reader = new PgnReader(Paths.get(args[0]))) {
+			games = reader.forEach(threads, builder::addGame);
+		}
+
+		int entries = builder.write(Paths.get(args[1]));
+
+		System.out.printf("%d games, %d positions, %d book moves, %.2f s%n", games, builder.positions.size(), entries,
+				(System.nanoTime() - start) / 1e9);
+	}
+
+	// Counts the opening moves of a game, up to the first one that can't be played. Safe to call from several threads
+	public void addGame(PgnGame game) {
+		int whiteScore = 1;
+		if (game.getResult().equals("1-0"))
+			whiteScore = 2;
+		else if (game.getResult().equals("0-1"))
+			whiteScore = 0;
+
+		List<long[]> seen = new ArrayList<>();
+
+		try {
+			Board board = game.createStartingBoard();
+
+			for (int i = 0; i < plies && i < game.getMoves().size(); i++) {
+				int move = San.parse(board, game.getMoves().get(i));
+				int score = board.getSideToMove() == Team.WHITE ? whiteScore : 2 - whiteScore;
+
+				seen.add(new long[] { board.getHash(), OpeningBook.encodeMove(move), score });
+				board.makeMove(move);
+			}
+		} catch (IllegalArgumentException e) {
+			// Keep the moves before the one that couldn't be played
+		}
+
+		synchronized (positions) {
+			for (long[] entry : seen) {
+				int[] counts = positions.computeIfAbsent(entry[0], key -> new HashMap<>())
+						.computeIfAbsent((int) entry[1], key -> new int[2]);
+
+				counts[0]++;
+				counts[1] += (int) entry[2];
+			}
+		}
+	}
+
+	// Writes the book sorted by key after its header, returning how many moves it has
+	public int write(Path path) throws IOException {
+		List<Long> keys = new ArrayList<>(positions.keySet());
+		keys.sort(Long::compareUnsigned);
+
+		ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+		int entries = 0;
+
+		buffer.putInt(OpeningBook.MAGIC).putInt(OpeningBook.VERSION).putLong(0);
+
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			for (long key : keys) {
+				Map<Integer, int[]> moves = positions.get(key);
+				int highest = 0;
+
+				for (int[] counts : moves.values())
+					if (counts[0] >= minimumGames)
+						highest = Math.max(highest, counts[1]);
+
+				for (Map.Entry<Integer, int[]> move : moves.entrySet()) {
+					int[] counts = move.getValue();
+
+					if (counts[0] < minimumGames)
+						continue;
+
+					// Moves that only ever lost are kept with the least weight rather than never played
+					int weight = highest <= MAX_WEIGHT ? counts[1] : (int) ((long) counts[1] * MAX_WEIGHT / highest);
+
+					if (buffer.remaining() < OpeningBook.ENTRY_BYTES)
+						flush(buffer, channel);
+
+					buffer.putLong(key).putShort((short) (int) move.getKey()).putShort((short) Math.max(1, weight))
+							.putInt(0);
+					entries++;
+				}
+			}
+
+			flush(buffer, channel);
+		}
+
+		return entries;
+	}
+
+	private static void flush(ByteBuffer buffer, FileChannel channel) throws IOException {
+		buffer.flip();
+
+		while (buffer.hasRemaining())
+			channel.write(buffer);
+
+		buffer.clear();
+	}
+}
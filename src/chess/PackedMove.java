@@ -0,0 +1,85 @@
+package chess;
+
+/*
+ * Moves packed into a single int so the search can generate and store them without allocating.
+ * Bits 0-5 hold the start square, 6-11 the destination, 12-14 the moving piece type,
+ * 15-17 the captured piece type and 18-20 the piece type a pawn is promoted to. Bit 21 marks an en passant capture,
+ * whose captured pawn isn't on the destination, and bit 22 castling, a king move of two squares that moves a rook too.
+ */
+final class PackedMove {
+	static final int NONE = 0;
+
+	// Upper bound on the number of moves any position can have
+	static final int MAX_MOVES = 256;
+
+	static final int EN_PASSANT = 1 << 21;
+	static final int CASTLING = 1 << 22;
+
+	private PackedMove() {
+	}
+
+	static int create(int start, int end, int moved, int captured, int promotion) {
+		return start | (end << 6) | (moved << 12) | (captured << 15) | (promotion << 18);
+	}
+
+	static int start(int move) {
+		return move & 63;
+	}
+
+	static int destination(int move) {
+		return (move >>> 6) & 63;
+	}
+
+	static int moved(int move) {
+		return (move >>> 12) & 7;
+	}
+
+	static int captured(int move) {
+		return (move >>> 15) & 7;
+	}
+
+	static int promotion(int move) {
+		return (move >>> 18) & 7;
+	}
+
+	static boolean isCapture(int move) {
+		return captured(move) != PieceType.NONE;
+	}
+
+	static boolean isEnPassant(int move) {
+		return (move & EN_PASSANT) != 0;
+	}
+
+	static boolean isCastling(int move) {
+		return (move & CASTLING) != 0;
+	}
+
+	// Square of the piece a capture takes, which for en passant is beside the start on the destination's column.
+	// Worked out without a branch, since en passant is too rare for the compiler to expect
+	static int capturedSquare(int move) {
+		return destination(move) ^ (move & EN_PASSANT) >>> 18;
+	}
+
+	// Converts to the object representation used by the GUI side of the program
+	static Move toMove(int move) {
+		Position start = new Position(Bitboards.row(start(move)), Bitboards.column(start(move)));
+		Position end = new Position(Bitboards.row(destination(move)), Bitboards.column(destination(move)));
+
+		return new Move(start, end, promotion(move));
+	}
+
+	// Writes a move as its start and destination in algebraic coordinates, "e2e4", with a letter for any promotion
+	static String toCoordinates(int move) {
+		String text = squareName(start(move)) + squareName(destination(move));
+
+		if (promotion(move) != PieceType.NONE)
+			text += " pnbrqk".charAt(promotion(move));
+
+		return text;
+	}
+
+	// Row 0 is white's first row and column 0 the a column
+	static String squareName(int square) {
+		return "" + (char) ('a' + Bitboards.column(square)) + (char) ('1' + Bitboards.row(square));
+	}
+}
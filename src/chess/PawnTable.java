@@ -0,0 +1,67 @@
+package chess;
+
+/*
+ * Small fixed size cache of pawn structure scores, indexed by Board's pawn hash. Pawns move rarely compared to
+ * other pieces, so most leaves in a search share their pawn structure with one already scored.
+ * Each search thread has its own table, so nothing here is synchronised.
+ */
+class PawnTable {
+	private final long[] keys;
+	private final int[] scores;
+	private final int indexMask;
+
+	private long hits, misses;
+
+	PawnTable(int entries) {
+		int size = Integer.highestOneBit(Math.max(1, entries));
+
+		keys = new long[size];
+		scores = new int[size];
+		indexMask = size - 1;
+
+		// An empty slot would otherwise match a board without pawns, which does score 0 but should count as a miss
+		keys[0] = 1;
+	}
+
+	// Returns the packed pawn structure score for the pawns, working it out and keeping it if it isn't cached
+	int probe(long pawnHash, long whitePawns, long blackPawns) {
+		int index = (int) pawnHash & indexMask;
+
+		if (keys[index] == pawnHash) {
+			hits++;
+			return scores[index];
+		}
+
+		misses++;
+		int score = Evaluation.pawnStructure(whitePawns, blackPawns);
+
+		keys[index] = pawnHash;
+		scores[index] = score;
+
+		return score;
+	}
+
+	void resetCounts() {
+		hits = misses = 0;
+	}
+
+	public long getHits() {
+		return hits;
+	}
+
+	public long getMisses() {
+		return misses;
+	}
+
+	public int getSize() {
+		return keys.length;
+	}
+
+	@Override
+	public String toString() {
+		long probes = hits + misses;
+		double hitRate = probes == 0 ? 0 : 100.0 * hits / probes;
+
+		return String.format("%d entries, %d hits, %d misses (%.1f%% hit rate)", keys.length, hits, misses, hitRate);
+	}
+}
@@ -0,0 +1,162 @@
+package chess;
+
+import java.util.Map;
+
+/*
+ * Counts the leaf positions of the legal move tree to a fixed depth, the standard check that move generation and
+ * making and reversing moves are correct, and a measure of how fast they are.
+ * Usage: Perft [depth] [divide] [nobulk] [objects] [fen=<FEN>]
+ *   divide   prints the count below each first move, for finding which move a wrong count comes from
+ *   nobulk   makes every move at the last ply instead of counting them as generated
+ *   objects  walks the tree through generatePossibleMovesForTeam and Move objects, as the GUI does
+ *   fen=     counts from the given position instead of the start
+ * Counts from the start position and the other well known test positions below are checked against their reference
+ * values, and the exit status is 1 if any are wrong.
+ */
+public class Perft {
+	// Leaf counts indexed by depth, from the start position and positions chosen to catch mistakes with castling,
+	// en passant, promotions and pins
+	private static final Map<String, long[]> REFERENCE_COUNTS = Map.of(
+			Fen.START_POSITION,
+			new long[] { 1, 20, 400, 8902, 197281, 4865609, 119060324 },
+			"r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+			new long[] { 1, 48, 2039, 97862, 4085603, 193690690 },
+			"8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+			new long[] { 1, 14, 191, 2812, 43238, 674624, 11030083 },
+			"r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+			new long[] { 1, 6, 264, 9467, 422333, 15833292 },
+			"rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8",
+			new long[] { 1, 44, 1486, 62379, 2103487, 89941194 });
+
+	private static final int MAX_DEPTH = 16;
+
+	// One move buffer per depth, so counting doesn't allocate
+	private final int[][] moveBuffers = new int[MAX_DEPTH + 1][PackedMove.MAX_MOVES];
+
+	private final boolean bulk;
+
+	public Perft(boolean bulk) {
+		this.bulk = bulk;
+	}
+
+	public static void main(String[] args) {
+		int depth = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+		boolean divide = false, bulk = true, objects = false;
+		String fen = Fen.START_POSITION;
+
+		for (int i = 1; i < args.length; i++) {
+			if (args[i].startsWith("fen=")) {
+				fen = args[i].substring(4);
+				continue;
+			}
+
+			switch (args[i]) {
+
+			case "divide":
+				divide = true;
+				break;
+			case "nobulk":
+				bulk = false;
+				break;
+			case "objects":
+				objects = true;
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown option " + args[i]);
+			}
+		}
+
+		if (depth < 1 || depth > MAX_DEPTH)
+			throw new IllegalArgumentException("Depth must be between 1 and " + MAX_DEPTH);
+
+		Perft perft = new Perft(bulk);
+		Board board = Board.fromFen(fen);
+		Team team = board.getSideToMove();
+		long[] reference = REFERENCE_COUNTS.getOrDefault(fen, new long[0]);
+		boolean passed = true;
+
+		if (divide)
+			perft.divide(board, team, depth);
+
+		System.out.println("depth        nodes   time (ms)     nodes/sec   reference");
+
+		for (int d = 1; d <= depth; d++) {
+			long start = System.nanoTime();
+			long nodes = objects ? countWithObjects(board, team, d) : perft.count(board, team, d);
+			double millis = (System.nanoTime() - start) / 1e6;
+
+			String check = "";
+			if (d < reference.length) {
+				boolean correct = nodes == reference[d];
+				check = correct ? "ok" : "WRONG, expected " + reference[d];
+				passed &= correct;
+			}
+
+			System.out.printf("%5d %12d %11.1f %13.0f   %s%n", d, nodes, millis, nodes / millis * 1000, check);
+		}
+
+		if (!passed)
+			System.exit(1);
+	}
+
+	// Returns the number of positions reached after depth moves
+	public long count(Board board, Team team, int depth) {
+		if (depth == 0)
+			return 1;
+
+		int[] moves = moveBuffers[depth];
+		int count = board.generateMoves(team, moves);
+
+		// Every generated move is legal, so the last ply doesn't need making
+		if (bulk && depth == 1)
+			return count;
+
+		Team opponent = Team.otherTeam(team);
+		long nodes = 0;
+
+		for (int i = 0; i < count; i++) {
+			board.makeMove(moves[i]);
+			nodes += count(board, opponent, depth - 1);
+			board.reverseLastMove();
+		}
+
+		return nodes;
+	}
+
+	// Prints the count below each of the team's moves, then the total
+	public long divide(Board board, Team team, int depth) {
+		int[] moves = new int[PackedMove.MAX_MOVES];
+		int count = board.generateMoves(team, moves);
+		long total = 0;
+
+		for (int i = 0; i < count; i++) {
+			board.makeMove(moves[i]);
+			long nodes = count(board, Team.otherTeam(team), depth - 1);
+			board.reverseLastMove();
+
+			System.out.println(PackedMove.toCoordinates(moves[i]) + ": " + nodes);
+			total += nodes;
+		}
+
+		System.out.println("Moves: " + count + ", nodes: " + total);
+		System.out.println();
+
+		return total;
+	}
+
+	// Same count through the public move list and Move objects, to measure what the GUI side pays for them
+	public static long countWithObjects(Board board, Team team, int depth) {
+		if (depth == 0)
+			return 1;
+
+		long nodes = 0;
+
+		for (Move move : board.generatePossibleMovesForTeam(team)) {
+			board.makeMove(move);
+			nodes += countWithObjects(board, Team.otherTeam(team), depth - 1);
+			board.reverseLastMove();
+		}
+
+		return nodes;
+	}
+}
@@ -0,0 +1,94 @@
+package chess;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * One game from a PGN file: its tag pairs, its moves in standard algebraic notation, and its result.
+ * Moves are kept as text so reading a file doesn't need a board, they're checked when the game is played.
+ */
+public class PgnGame {
+	// Tags every PGN game has, written first and in this order
+	static final String[] SEVEN_TAG_ROSTER = { "Event", "Site", "Date", "Round", "White", "Black", "Result" };
+
+	private static final String UNFINISHED = "*";
+
+	private final Map<String, String> tags;
+	private final List<String> moves;
+	private final String result;
+
+	public PgnGame(Map<String, String> tags, List<String> moves, String result) {
+		this.tags = Collections.unmodifiableMap(new LinkedHashMap<>(tags));
+		this.moves = Collections.unmodifiableList(new ArrayList<>(moves));
+		this.result = result == null ? UNFINISHED : result;
+	}
+
+	// Creates a game from the moves made on a board, with a FEN tag if it didn't start from the usual position
+	public static PgnGame fromBoard(Board board, Map<String, String> tags, String result) {
+		Board replay = new Board(board);
+		int moveCount = board.getMoveCount();
+
+		for (int i = 0; i < moveCount; i++)
+			replay.reverseLastMove();
+
+		Map<String, String> allTags = new LinkedHashMap<>(tags);
+		String startFen = replay.toFen();
+
+		if (!startFen.equals(Fen.START_POSITION)) {
+			allTags.put("SetUp", "1");
+			allTags.put("FEN", startFen);
+		}
+
+		List<String> moves = new ArrayList<>(moveCount);
+		for (int i = 0; i < moveCount; i++) {
+			moves.add(San.write(replay, board.getMove(i)));
+			replay.makeMove(board.getMove(i));
+		}
+
+		allTags.put("Result", result);
+		return new PgnGame(allTags, moves, result);
+	}
+
+	// Returns the value of a tag, or null if the game doesn't have it
+	public String getTag(String name) {
+		return tags.get(name);
+	}
+
+	public Map<String, String> getTags() {
+		return tags;
+	}
+
+	public List<String> getMoves() {
+		return moves;
+	}
+
+	// "1-0", "0-1", "1/2-1/2" or "*" for a game that didn't finish
+	public String getResult() {
+		return result;
+	}
+
+	// Returns the position the game starts from, given by its FEN tag if it has one
+	public Board createStartingBoard() {
+		String fen = tags.get("FEN");
+		return fen == null ? new Board() : Board.fromFen(fen);
+	}
+
+	// Plays every move from the starting position and returns the final board, which can reverse them all.
+	// Throws IllegalArgumentException at the first move that isn't legal
+	public Board play() {
+		Board board = createStartingBoard();
+
+		for (String move : moves)
+			board.makeMove(San.parse(board, move));
+
+		return board;
+	}
+
+	@Override
+	public String toString() {
+		return tags.getOrDefault("White", "?") + " - " + tags.getOrDefault("Black", "?") + " " + result;
+	}
+}
@@ -0,0 +1,305 @@
+package chess;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/*
+ * Reads PGN games one at a time through a fixed size buffer, so files of any size are read in constant memory.
+ * Comments, variations, numeric annotations and move numbers are skipped, leaving the tags, main line and result.
+ * Text is read as ISO 8859-1, the PGN standard's character set, so every byte maps to one character.
+ */
+public class PgnReader implements Closeable {
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	// Games waiting for a worker per thread, enough to keep workers busy without holding much of the file
+	private static final int GAMES_QUEUED_PER_THREAD = 64;
+
+	private static final int END_OF_INPUT = -1;
+
+	private final ReadableByteChannel channel;
+
+	// Read from the channel through a heap buffer, then taken a byte at a time from its array
+	private final ByteBuffer buffer;
+	private final byte[] bytes;
+	private int position;
+	private int limit;
+
+	// A character read ahead and put back to be read again
+	private int pushedBack;
+	private boolean hasPushedBack;
+
+	private final StringBuilder token = new StringBuilder();
+
+	public PgnReader(Path path) throws IOException {
+		this(FileChannel.open(path, StandardOpenOption.READ));
+	}
+
+	public PgnReader(ReadableByteChannel channel) {
+		this.channel = channel;
+		buffer = ByteBuffer.allocate(BUFFER_SIZE);
+		bytes = buffer.array();
+	}
+
+	// Returns the next game, or null when there are no more
+	public PgnGame next() throws IOException {
+		Map<String, String> tags = new LinkedHashMap<>();
+		List<String> moves = new ArrayList<>();
+		String result = null;
+		boolean inMovetext = false;
+
+		while (result == null) {
+			int c = skipWhitespace();
+
+			if (c == END_OF_INPUT) {
+				if (tags.isEmpty() && moves.isEmpty())
+					return null;
+				break;
+			}
+
+			switch (c) {
+
+			case '[':
+				// Tags after moves belong to the next game, this one ended without a result
+				if (inMovetext) {
+					pushBack(c);
+					return new PgnGame(tags, moves, null);
+				}
+
+				readTag(tags);
+				break;
+			case '{':
+				skipPast('}');
+				break;
+			case ';':
+			case '%':
+				skipPast('\n');
+				break;
+			case '(':
+				skipVariation();
+				break;
+			case '$':
+				readToken(c);
+				break;
+			case ')':
+			case ']':
+			case '}':
+				// Stray closing brackets are ignored
+				break;
+			default:
+				inMovetext = true;
+				result = readMovetextToken(c, moves);
+			}
+		}
+
+		return new PgnGame(tags, moves, result);
+	}
+
+	// Reads every remaining game and hands each to the action on one of several threads, returning how many were
+	// read. Games wait in a bounded queue so memory stays constant however far the workers fall behind.
+	// The first exception thrown by the action stops reading and is rethrown once the workers finish
+	public long forEach(int threads, Consumer<PgnGame> action) throws IOException {
+		BlockingQueue<PgnGame> queue = new ArrayBlockingQueue<>(threads * GAMES_QUEUED_PER_THREAD);
+		PgnGame endMarker = new PgnGame(Map.of(), List.of(), null);
+		AtomicReference<RuntimeException> failure = new AtomicReference<>();
+		List<Thread> workers = new ArrayList<>();
+
+		for (int i = 0; i < threads; i++) {
+			Thread worker = new Thread(() -> {
+				try {
+					// After a failure the queue is still emptied, so reading never blocks on a full queue
+					for (PgnGame game = queue.take(); game != endMarker; game = queue.take())
+						if (failure.get() == null)
+							try {
+								action.accept(game);
+							} catch (RuntimeException e) {
+								failure.compareAndSet(null, e);
+							}
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}, "pgn-worker-" + i);
+
+			worker.setDaemon(true);
+			worker.start();
+			workers.add(worker);
+		}
+
+		long count = 0;
+
+		try {
+			try {
+				for (PgnGame game = next(); game != null && failure.get() == null; game = next()) {
+					queue.put(game);
+					count++;
+				}
+			} finally {
+				for (int i = 0; i < threads; i++)
+					queue.put(endMarker);
+			}
+
+			for (Thread worker : workers)
+				worker.join();
+
+		} catch (InterruptedException e) {
+			workers.forEach(Thread::interrupt);
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while reading games", e);
+		}
+
+		if (failure.get() != null)
+			throw failure.get();
+
+		return count;
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	// Reads a tag pair, [Name "Value"], after its opening bracket
+	private void readTag(Map<String, String> tags) throws IOException {
+		String name = readToken(skipWhitespace());
+		int c = skipWhitespace();
+
+		if (c != '"')
+			throw new IOException("Tag " + name + " has no quoted value");
+
+		token.setLength(0);
+
+		for (c = read(); c != '"'; c = read()) {
+			if (c == END_OF_INPUT)
+				throw new IOException("Tag " + name + " isn't closed");
+			if (c == '\\')
+				c = read();
+
+			token.append((char) c);
+		}
+
+		tags.put(name, token.toString());
+		skipPast(']');
+	}
+
+	// Adds a move, or returns the result if the token is one. Move numbers are dropped, along with one stuck to
+	// the front of a move, as in "12.e4"
+	private String readMovetextToken(int first, List<String> moves) throws IOException {
+		String text = readToken(first);
+
+		if (text.equals("1-0") || text.equals("0-1") || text.equals("1/2-1/2") || text.equals("*"))
+			return text;
+
+		int start = 0;
+		while (start < text.length() && Character.isDigit(text.charAt(start)))
+			start++;
+
+		// Digits without dots after them aren't a move number, so they're part of the move
+		if (start < text.length() && text.charAt(start) != '.')
+			start = 0;
+
+		while (start < text.length() && text.charAt(start) == '.')
+			start++;
+
+		if (start < text.length())
+			moves.add(text.substring(start));
+
+		return null;
+	}
+
+	// Reads up to whitespace or a character that starts something else
+	private String readToken(int first) throws IOException {
+		token.setLength(0);
+
+		for (int c = first; c != END_OF_INPUT; c = read()) {
+			if (endsToken(c)) {
+				pushBack(c);
+				break;
+			}
+
+			token.append((char) c);
+		}
+
+		return token.toString();
+	}
+
+	// Skips a variation, which can hold comments and variations of its own, after its opening bracket
+	private void skipVariation() throws IOException {
+		int depth = 1;
+
+		while (depth > 0) {
+			int c = read();
+
+			if (c == END_OF_INPUT)
+				return;
+			if (c == '(')
+				depth++;
+			else if (c == ')')
+				depth--;
+			else if (c == '{')
+				skipPast('}');
+			else if (c == ';')
+				skipPast('\n');
+		}
+	}
+
+	private void skipPast(int end) throws IOException {
+		int c = read();
+
+		while (c != end && c != END_OF_INPUT)
+			c = read();
+	}
+
+	private int skipWhitespace() throws IOException {
+		int c = read();
+
+		while (c != END_OF_INPUT && c <= ' ')
+			c = read();
+
+		return c;
+	}
+
+	private void pushBack(int c) {
+		pushedBack = c;
+		hasPushedBack = true;
+	}
+
+	private int read() throws IOException {
+		if (hasPushedBack) {
+			hasPushedBack = false;
+			return pushedBack;
+		}
+
+		if (position == limit) {
+			buffer.clear();
+
+			int read = 0;
+			while (read == 0)
+				read = channel.read(buffer);
+
+			if (read < 0)
+				return END_OF_INPUT;
+
+			position = 0;
+			limit = read;
+		}
+
+		return bytes[position++] & 0xFF;
+	}
+
+	// Whitespace, or a character that starts or ends something other than a token
+	private static boolean endsToken(int c) {
+		return c <= ' ' || c == '[' || c == ']' || c == '{' || c == '}' || c == '(' || c == ')' || c == ';';
+	}
+}
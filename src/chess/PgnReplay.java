@@ -0,0 +1,46 @@
+package chess;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Replays every game in a PGN file through Board on several threads, reporting how many games and moves were
+ * played, how many games had a move that couldn't be played, and how fast. Usage: PgnReplay <file> [threads]
+ */
+public class PgnReplay {
+	// How many failed games are described before the rest are only counted
+	private static final int FAILURES_SHOWN = 10;
+
+	public static void main(String[] args) throws IOException {
+		if (args.length == 0) {
+			System.out.println("Usage: PgnReplay <file> [threads]");
+			return;
+		}
+
+		Path path = Paths.get(args[0]);
+		int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+		AtomicLong moves = new AtomicLong();
+		AtomicLong failures = new AtomicLong();
+
+		long start = System.nanoTime();
+		long games;
+
+		try (PgnReader reader = new PgnReader(path)) {
+			games = reader.forEach(threads, game -> {
+				try {
+					moves.addAndGet(game.play().getMoveCount());
+				} catch (IllegalArgumentException e) {
+					if (failures.incrementAndGet() <= FAILURES_SHOWN)
+						System.out.println(game + ": " + e.getMessage());
+				}
+			});
+		}
+
+		double seconds = (System.nanoTime() - start) / 1e9;
+
+		System.out.printf("%d games, %d moves, %d games failed, %.2f s, %.0f games/sec, %.0f moves/sec%n", games,
+				moves.get(), failures.get(), seconds, games / seconds, moves.get() / seconds);
+	}
+}
@@ -0,0 +1,127 @@
+package chess;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+
+/*
+ * Writes games in PGN export format through a fixed size buffer: the seven standard tags first, then any others,
+ * then the moves numbered and wrapped to 80 columns. Text is written as ISO 8859-1, as PgnReader reads it.
+ * Not safe to share between threads.
+ */
+public class PgnWriter implements Closeable, Flushable {
+	private static final int BUFFER_SIZE = 1 << 16;
+	private static final int LINE_LENGTH = 79;
+
+	private final WritableByteChannel channel;
+	private final ByteBuffer buffer;
+
+	// Characters written to the current movetext line
+	private int column;
+
+	public PgnWriter(Path path) throws IOException {
+		this(FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING));
+	}
+
+	public PgnWriter(WritableByteChannel channel) {
+		this.channel = channel;
+		buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+	}
+
+	public void write(PgnGame game) throws IOException {
+		Map<String, String> tags = game.getTags();
+
+		for (String name : PgnGame.SEVEN_TAG_ROSTER)
+			writeTag(name, name.equals("Result") ? game.getResult() : tags.getOrDefault(name, "?"));
+
+		for (Map.Entry<String, String> tag : tags.entrySet())
+			if (!isInSevenTagRoster(tag.getKey()))
+				writeTag(tag.getKey(), tag.getValue());
+
+		write("\n");
+		column = 0;
+
+		// Black moving first is written with the move number and an ellipsis
+		Board start = game.createStartingBoard();
+		int moveNumber = start.getFullmoveNumber();
+		boolean whiteToMove = start.getSideToMove() == Team.WHITE;
+
+		for (int i = 0; i < game.getMoves().size(); i++) {
+			if (whiteToMove)
+				writeMovetext(moveNumber + ".");
+			else if (i == 0)
+				writeMovetext(moveNumber + "...");
+
+			writeMovetext(game.getMoves().get(i));
+
+			if (!whiteToMove)
+				moveNumber++;
+
+			whiteToMove = !whiteToMove;
+		}
+
+		writeMovetext(game.getResult());
+		write("\n\n");
+	}
+
+	@Override
+	public void flush() throws IOException {
+		buffer.flip();
+
+		while (buffer.hasRemaining())
+			channel.write(buffer);
+
+		buffer.clear();
+	}
+
+	@Override
+	public void close() throws IOException {
+		flush();
+		channel.close();
+	}
+
+	private void writeTag(String name, String value) throws IOException {
+		write("[" + name + " \"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"]\n");
+	}
+
+	// Writes a token of movetext, starting a new line rather than going past the line length
+	private void writeMovetext(String text) throws IOException {
+		if (column > 0 && column + 1 + text.length() > LINE_LENGTH) {
+			write("\n");
+			column = 0;
+		}
+
+		if (column > 0) {
+			write(" ");
+			column++;
+		}
+
+		write(text);
+		column += text.length();
+	}
+
+	private void write(String text) throws IOException {
+		for (int i = 0; i < text.length(); i++) {
+			if (!buffer.hasRemaining())
+				flush();
+
+			char c = text.charAt(i);
+			buffer.put((byte) (c < 256 ? c : '?'));
+		}
+	}
+
+	private static boolean isInSevenTagRoster(String name) {
+		for (String rosterName : PgnGame.SEVEN_TAG_ROSTER)
+			if (rosterName.equals(name))
+				return true;
+
+		return false;
+	}
+}
@@ -0,0 +1,67 @@
+package chess;
+
+/*
+ * Integer codes for piece types, used by the bitboard representation in Board.
+ * A square code packs the type in the low 3 bits and the team above it.
+ */
+final class PieceType {
+	static final int NONE = 0;
+	static final int PAWN = 1;
+	static final int KNIGHT = 2;
+	static final int BISHOP = 3;
+	static final int ROOK = 4;
+	static final int QUEEN = 5;
+	static final int KING = 6;
+
+	static final int COUNT = 7;
+
+	// One immutable piece object per team and type, indexed by square code
+	private static final Piece[] PIECES = new Piece[16];
+
+	static {
+		for (Team team : Team.values())
+			for (int type = PAWN; type <= KING; type++)
+				PIECES[code(team.ordinal(), type)] = createPiece(team, type);
+	}
+
+	private PieceType() {
+	}
+
+	// Packs a team and piece type into a single square code
+	static int code(int team, int type) {
+		return type | (team << 3);
+	}
+
+	static int typeOf(int code) {
+		return code & 7;
+	}
+
+	static int teamOf(int code) {
+		return code >>> 3;
+	}
+
+	// Returns the shared object representation of a piece used by the GUI side of the program, null for an empty square
+	static Piece toPiece(int code) {
+		return PIECES[code];
+	}
+
+	private static Piece createPiece(Team team, int type) {
+		switch (type) {
+
+		case PAWN:
+			return new Pawn(team);
+		case KNIGHT:
+			return new Knight(team);
+		case BISHOP:
+			return new Bishop(team);
+		case ROOK:
+			return new Rook(team);
+		case QUEEN:
+			return new Queen(team);
+		case KING:
+			return new King(team);
+		default:
+			throw new AssertionError("Piece type doesn't seem to match with any supported types");
+		}
+	}
+}
@@ -0,0 +1,188 @@
+package chess;
+
+/*
+ * Standard algebraic notation, "Nf3", "exd5", "e8=Q+", "O-O", as used in PGN files. Squares are named from white's
+ * side, a1 being row 0, column 0, unlike the labels the GUI shows.
+ */
+final class San {
+	private static final String PIECE_LETTERS = "  NBRQK";
+
+	private San() {
+	}
+
+	// Writes a legal move in the position before it's made
+	static String write(Board board, int move) {
+		StringBuilder san = new StringBuilder(8);
+		int type = PackedMove.moved(move);
+		int start = PackedMove.start(move);
+		int end = PackedMove.destination(move);
+
+		if (PackedMove.isCastling(move))
+			san.append(end > start ? "O-O" : "O-O-O");
+		else {
+			if (type == PieceType.PAWN) {
+				if (PackedMove.isCapture(move))
+					san.append((char) ('a' + Bitboards.column(start)));
+			} else {
+				san.append(PIECE_LETTERS.charAt(type));
+				appendDisambiguation(san, board, move);
+			}
+
+			if (PackedMove.isCapture(move))
+				san.append('x');
+
+			san.append(PackedMove.squareName(end));
+
+			if (PackedMove.promotion(move) != PieceType.NONE)
+				san.append('=').append(PIECE_LETTERS.charAt(PackedMove.promotion(move)));
+		}
+
+		Team mover = board.getSideToMove();
+		Team opponent = Team.otherTeam(mover);
+
+		board.makeMove(move);
+
+		if (board.isChecked(opponent))
+			san.append(board.generateMoves(opponent, new int[PackedMove.MAX_MOVES]) == 0 ? '#' : '+');
+
+		board.reverseLastMove();
+
+		return san.toString();
+	}
+
+	// Returns the legal move a SAN string describes for the side to move, or throws IllegalArgumentException if it
+	// doesn't describe exactly one. Check, mate and annotation marks on the end are ignored
+	static int parse(Board board, CharSequence san) {
+		int end = san.length();
+		while (end > 0 && "+#!?".indexOf(san.charAt(end - 1)) >= 0)
+			end--;
+
+		if (end > 0 && (san.charAt(0) == 'O' || san.charAt(0) == '0'))
+			return parseCastling(board, san, end);
+
+		int start = 0;
+		int type = PieceType.PAWN;
+
+		if (end > 0 && PIECE_LETTERS.indexOf(san.charAt(0)) > 1) {
+			type = PIECE_LETTERS.indexOf(san.charAt(0));
+			start = 1;
+		}
+
+		// Promotion, written "e8=Q" or sometimes "e8Q"
+		int promotion = PieceType.NONE;
+		if (end > 0 && PIECE_LETTERS.indexOf(san.charAt(end - 1)) > 1) {
+			promotion = PIECE_LETTERS.indexOf(san.charAt(end - 1));
+			end -= end > 1 && san.charAt(end - 2) == '=' ? 2 : 1;
+		}
+
+		if (end - start < 2)
+			throw invalid(san, "it's too short");
+
+		int destination = square(san, end - 2);
+
+		// Anything between the piece letter and destination narrows down which piece moves
+		int column = -1, row = -1;
+		for (int i = start; i < end - 2; i++) {
+			char c = san.charAt(i);
+
+			if (c >= 'a' && c <= 'h')
+				column = c - 'a';
+			else if (c >= '1' && c <= '8')
+				row = c - '1';
+			else if (c != 'x' && c != '-')
+				throw invalid(san, "'" + c + "' isn't expected");
+		}
+
+		int[] moves = new int[PackedMove.MAX_MOVES];
+		int count = board.generateMoves(board.getSideToMove(), moves);
+		int found = PackedMove.NONE;
+
+		for (int i = 0; i < count; i++) {
+			int move = moves[i];
+			int from = PackedMove.start(move);
+
+			if (PackedMove.moved(move) != type || PackedMove.destination(move) != destination
+					|| PackedMove.promotion(move) != promotion)
+				continue;
+			if ((column >= 0 && Bitboards.column(from) != column) || (row >= 0 && Bitboards.row(from) != row))
+				continue;
+			if (found != PackedMove.NONE)
+				throw invalid(san, "more than one move matches");
+
+			found = move;
+		}
+
+		if (found == PackedMove.NONE)
+			throw invalid(san, "it isn't a legal move in " + board.toFen());
+
+		return found;
+	}
+
+	// "O-O" or "O-O-O", also written with zeros
+	private static int parseCastling(Board board, CharSequence san, int end) {
+		String text = san.subSequence(0, end).toString().replace('0', 'O');
+		boolean kingside;
+
+		if (text.equals("O-O"))
+			kingside = true;
+		else if (text.equals("O-O-O"))
+			kingside = false;
+		else
+			throw invalid(san, "it isn't O-O or O-O-O");
+
+		int[] moves = new int[PackedMove.MAX_MOVES];
+		int count = board.generateMoves(board.getSideToMove(), moves);
+
+		for (int i = 0; i < count; i++)
+			if (PackedMove.isCastling(moves[i])
+					&& (PackedMove.destination(moves[i]) > PackedMove.start(moves[i])) == kingside)
+				return moves[i];
+
+		throw invalid(san, "castling isn't legal in " + board.toFen());
+	}
+
+	// Adds the start column, row or both when another piece of the same type could move to the same square
+	private static void appendDisambiguation(StringBuilder san, Board board, int move) {
+		int[] moves = new int[PackedMove.MAX_MOVES];
+		int count = board.generateMoves(board.getSideToMove(), moves);
+		int start = PackedMove.start(move);
+		boolean ambiguous = false, sameColumn = false, sameRow = false;
+
+		for (int i = 0; i < count; i++) {
+			int other = moves[i];
+			int otherStart = PackedMove.start(other);
+
+			if (otherStart == start || PackedMove.moved(other) != PackedMove.moved(move)
+					|| PackedMove.destination(other) != PackedMove.destination(move))
+				continue;
+
+			ambiguous = true;
+			sameColumn |= Bitboards.column(otherStart) == Bitboards.column(start);
+			sameRow |= Bitboards.row(otherStart) == Bitboards.row(start);
+		}
+
+		if (!ambiguous)
+			return;
+
+		if (!sameColumn)
+			san.append((char) ('a' + Bitboards.column(start)));
+		else if (!sameRow)
+			san.append((char) ('1' + Bitboards.row(start)));
+		else
+			san.append(PackedMove.squareName(start));
+	}
+
+	private static int square(CharSequence san, int index) {
+		char column = san.charAt(index);
+		char row = san.charAt(index + 1);
+
+		if (column < 'a' || column > 'h' || row < '1' || row > '8')
+			throw invalid(san, "it doesn't end in a square");
+
+		return Bitboards.square(row - '1', column - 'a');
+	}
+
+	private static IllegalArgumentException invalid(CharSequence san, String reason) {
+		return new IllegalArgumentException("Invalid move \"" + san + "\", " + reason);
+	}
+}
@@ -0,0 +1,86 @@
+package chess;
+
+import java.util.Collections;
+import java.util.List;
+
+/*
+ * Outcome of a search: the move picked, its score from the searching team's point of view,
+ * and the line of play the search expects to follow from it
+ */
+public class SearchResult {
+	private final List<Move> principalVariation;
+	private final int[] packedPrincipalVariation;
+	private final int score;
+	private final int depth;
+	private final long nodes;
+	private final long nanos;
+
+	SearchResult(List<Move> principalVariation, int[] packedPrincipalVariation, int score, int depth, long nodes,
+			long nanos) {
+		this.principalVariation = Collections.unmodifiableList(principalVariation);
+		this.packedPrincipalVariation = packedPrincipalVariation;
+		this.score = score;
+		this.depth = depth;
+		this.nodes = nodes;
+		this.nanos = nanos;
+	}
+
+	// Null when there were no legal moves to search
+	public Move getBestMove() {
+		if (principalVariation.isEmpty())
+			return null;
+
+		return principalVariation.get(0);
+	}
+
+	// Best move followed by the replies both teams are expected to make
+	public List<Move> getPrincipalVariation() {
+		return principalVariation;
+	}
+
+	// The principal variation as packed moves, which unlike Move keep any promotion
+	int[] getPackedPrincipalVariation() {
+		return packedPrincipalVariation.clone();
+	}
+
+	public int getScore() {
+		return score;
+	}
+
+	// Moves until the searching team mates, negative if it's the one being mated, or 0 if the score isn't a mate
+	public int getMateIn() {
+		if (score > MinimaxAI.MATE_BOUND)
+			return (MinimaxAI.MATE - score + 1) / 2;
+		if (score < -MinimaxAI.MATE_BOUND)
+			return -(MinimaxAI.MATE + score + 1) / 2;
+
+		return 0;
+	}
+
+	// Deepest search that finished
+	public int getDepth() {
+		return depth;
+	}
+
+	public long getNodes() {
+		return nodes;
+	}
+
+	public long getNodesPerSecond() {
+		return nanos == 0 ? 0 : nodes * 1_000_000_000L / nanos;
+	}
+
+	public long getTimeMillis() {
+		return nanos / 1_000_000;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder line = new StringBuilder();
+		for (Move move : principalVariation)
+			line.append(", ").append(move);
+
+		return String.format("depth %d score %d nodes %d nps %d time %dms pv [%s]", depth, score, nodes,
+				getNodesPerSecond(), getTimeMillis(), line.length() == 0 ? "" : line.substring(2));
+	}
+}
@@ -0,0 +1,78 @@
+package chess;
+
+/*
+ * Counts from the last search a MinimaxAI made, summed over every search thread
+ */
+public class SearchStatistics {
+	private final int depth;
+	private final long nodes;
+	private final long quiescenceNodes;
+	private final long cutoffs;
+	private final long firstMoveCutoffs;
+	private final long pawnTableHits;
+	private final long pawnTableMisses;
+
+	SearchStatistics(int depth, long nodes, long quiescenceNodes, long cutoffs, long firstMoveCutoffs,
+			long pawnTableHits, long pawnTableMisses) {
+		this.depth = depth;
+		this.nodes = nodes;
+		this.quiescenceNodes = quiescenceNodes;
+		this.cutoffs = cutoffs;
+		this.firstMoveCutoffs = firstMoveCutoffs;
+		this.pawnTableHits = pawnTableHits;
+		this.pawnTableMisses = pawnTableMisses;
+	}
+
+	public int getDepth() {
+		return depth;
+	}
+
+	public long getNodes() {
+		return nodes;
+	}
+
+	// Nodes searched past the depth limit to settle captures, included in getNodes
+	public long getQuiescenceNodes() {
+		return quiescenceNodes;
+	}
+
+	public double getQuiescenceShare() {
+		return nodes == 0 ? 0 : (double) quiescenceNodes / nodes;
+	}
+
+	public long getCutoffs() {
+		return cutoffs;
+	}
+
+	// Share of cutoffs caused by the first move searched, the closer to 1 the better the move ordering
+	public double getFirstMoveCutoffRate() {
+		return cutoffs == 0 ? 0 : (double) firstMoveCutoffs / cutoffs;
+	}
+
+	// Branching factor a tree of uniform width would need to reach the same depth with the same nodes
+	public double getEffectiveBranchingFactor() {
+		return depth == 0 ? 0 : Math.pow(nodes, 1.0 / depth);
+	}
+
+	public long getPawnTableHits() {
+		return pawnTableHits;
+	}
+
+	public long getPawnTableMisses() {
+		return pawnTableMisses;
+	}
+
+	// Share of evaluations that found their pawn structure score already cached
+	public double getPawnTableHitRate() {
+		long probes = pawnTableHits + pawnTableMisses;
+		return probes == 0 ? 0 : (double) pawnTableHits / probes;
+	}
+
+	@Override
+	public String toString() {
+		return String.format(
+				"depth %d, %d nodes (%.1f%% quiescence), effective branching factor %.2f, %.1f%% of cutoffs on first move, %.1f%% pawn table hits",
+				depth, nodes, 100 * getQuiescenceShare(), getEffectiveBranchingFactor(), 100 * getFirstMoveCutoffRate(),
+				100 * getPawnTableHitRate());
+	}
+}
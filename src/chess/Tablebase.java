@@ -0,0 +1,312 @@
+package chess;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/*
+ * Exact results for endgames with up to four pieces, kings included, read from tables TablebaseGenerator writes.
+ * Each table is memory mapped when first needed, so probing reads a byte from the page cache rather than the heap.
+ *
+ * A table holds one material balance, such as KQvKR, named with the stronger side as white. Positions with the
+ * colours the other way round are flipped top to bottom to look them up. Its pieces are listed in slots: white's
+ * king, black's king, white's other pieces then black's, most valuable first. A position's index is the side to
+ * move in bit 0, then six bits for each slot's square in order. After an 8 byte header, "CHTB" and a version,
+ * the table has a byte per index:
+ *
+ *   0      draw
+ *   1-254  one more than the number of plies to mate with best play, odd plies when the side to move wins
+ *   255    not a legal position
+ *
+ * Castling and en passant captures are left out, so positions where either is possible can't be probed, and the
+ * fifty move rule is ignored, so a won position may take longer to mate than the rule allows.
+ */
+public class Tablebase {
+	static final int MAX_PIECES = 4;
+
+	static final int DRAW = 0;
+	static final int INVALID = 255;
+
+	// Ranks are counted from here, more than the plies to any mate a table can hold, see rank
+	static final int RANK_BASE = INVALID;
+
+	// Returned by a probe when there's no table for the position
+	static final int UNKNOWN = -1;
+
+	static final int MAGIC = 0x43485442;
+	static final int VERSION = 1;
+	static final int HEADER_BYTES = 8;
+
+	static final String EXTENSION = ".tb";
+
+	// Slot order of the pieces other than kings, most valuable first
+	static final int[] PIECE_ORDER = { PieceType.QUEEN, PieceType.ROOK, PieceType.BISHOP, PieceType.KNIGHT,
+			PieceType.PAWN };
+
+	private static final String LETTERS = " PNBRQK";
+
+	// Marks a table that isn't in the directory, so it isn't looked for again
+	private static final ByteBuffer MISSING = ByteBuffer.allocate(0);
+
+	private final Path directory;
+
+	// Mapped tables by material key, see materialKey, shared by every search thread
+	private final AtomicReferenceArray<ByteBuffer> tables = new AtomicReferenceArray<>(256);
+
+	public Tablebase(Path directory) {
+		this.directory = directory;
+	}
+
+	// Value of the position for the side to move, or UNKNOWN if it can't be looked up. The search probes at every
+	// node, so the index is built straight from the bitboards, in the same slot order as the probe below
+	int probe(Board board) {
+		int count = Long.bitCount(board.getOccupied());
+		int side = board.getSideToMove().ordinal();
+
+		if (count > MAX_PIECES || board.getCastlingRights() != 0)
+			return UNKNOWN;
+
+		// An en passant square only matters if a pawn can take there
+		int enPassant = board.getEnPassantSquare();
+		if (enPassant >= 0 && (Attacks.pawn(1 - side, enPassant) & board.getPieces(side, PieceType.PAWN)) != 0)
+			return UNKNOWN;
+
+		if (count == 2)
+			return DRAW;
+
+		int strong = strongerTeam(board);
+		int flip = strong == 0 ? 0 : 56;
+		int index = side ^ strong;
+		int shift = 1;
+		int key = 0;
+
+		for (int slot = 0; slot < 2 + 2 * PIECE_ORDER.length; slot++) {
+			int team = slot < 2 ? slot ^ strong : (slot - 2) / PIECE_ORDER.length ^ strong;
+			int type = slot < 2 ? PieceType.KING : PIECE_ORDER[(slot - 2) % PIECE_ORDER.length];
+
+			for (long pieces = board.getPieces(team, type); pieces != 0; pieces &= pieces - 1) {
+				index |= (Long.numberOfTrailingZeros(pieces) ^ flip) << shift;
+				shift += 6;
+
+				if (type != PieceType.KING)
+					key = key << 4 | (team ^ strong) << 3 | type;
+			}
+		}
+
+		return lookUp(key, index);
+	}
+
+	// Value of a position given as a list of pieces in any order, or UNKNOWN if there's no table for it
+	int probe(int count, int[] types, int[] teams, int[] squares, int sideToMove) {
+		int strong = strongerTeam(count, types, teams);
+		int flip = strong == 0 ? 0 : 56;
+		int index = sideToMove ^ strong;
+		int shift = 1;
+		int key = 0;
+
+		// Kings first, then the stronger side's pieces and the weaker side's, each most valuable first
+		for (int slot = 0; slot < 2 + 2 * PIECE_ORDER.length; slot++) {
+			int team = slot < 2 ? slot ^ strong : (slot - 2) / PIECE_ORDER.length ^ strong;
+			int type = slot < 2 ? PieceType.KING : PIECE_ORDER[(slot - 2) % PIECE_ORDER.length];
+
+			for (int i = 0; i < count; i++)
+				if (types[i] == type && teams[i] == team) {
+					index |= (squares[i] ^ flip) << shift;
+					shift += 6;
+
+					if (type != PieceType.KING)
+						key = key << 4 | (team ^ strong) << 3 | type;
+				}
+		}
+
+		if (count == 2)
+			return DRAW;
+
+		return lookUp(key, index);
+	}
+
+	private int lookUp(int key, int index) {
+		ByteBuffer table = table(key);
+		if (table == MISSING)
+			return UNKNOWN;
+
+		int value = table.get(HEADER_BYTES + index) & 0xFF;
+		return value == INVALID ? UNKNOWN : value;
+	}
+
+	// Whether the side to move wins a position with this value, as opposed to losing or drawing
+	static boolean isWin(int value) {
+		return value != DRAW && (plies(value) & 1) == 1;
+	}
+
+	static boolean isLoss(int value) {
+		return value != DRAW && (plies(value) & 1) == 0;
+	}
+
+	// How good moving into a position with this value is for the side that moves: above 0 wins, quicker is higher,
+	// 0 draws, below 0 loses, slower is higher
+	static int rank(int value) {
+		if (value == DRAW)
+			return 0;
+
+		int plies = plies(value) + 1;
+		return isLoss(value) ? RANK_BASE - plies : plies - RANK_BASE;
+	}
+
+	// Plies to mate from a won or lost position
+	static int plies(int value) {
+		return value - 1;
+	}
+
+	// The team with more pieces, or the more valuable piece if they have as many, white if they're the same
+	static int strongerTeam(int count, int[] types, int[] teams) {
+		int[] pieces = new int[2];
+		int[] best = new int[2];
+
+		for (int i = 0; i < count; i++)
+			if (types[i] != PieceType.KING) {
+				pieces[teams[i]]++;
+				best[teams[i]] = Math.max(best[teams[i]], types[i]);
+			}
+
+		if (pieces[0] != pieces[1])
+			return pieces[1] > pieces[0] ? 1 : 0;
+
+		return best[1] > best[0] ? 1 : 0;
+	}
+
+	// Same as above for a position on a board
+	private static int strongerTeam(Board board) {
+		int white = Long.bitCount(board.getOccupancy(Team.WHITE));
+		int black = Long.bitCount(board.getOccupancy(Team.BLACK));
+
+		if (white != black)
+			return black > white ? 1 : 0;
+
+		return bestPiece(board, 1) > bestPiece(board, 0) ? 1 : 0;
+	}
+
+	// The most valuable piece other than the king, or NONE if there's only the king
+	private static int bestPiece(Board board, int team) {
+		for (int type : PIECE_ORDER)
+			if (board.getPieces(team, type) != 0)
+				return type;
+
+		return PieceType.NONE;
+	}
+
+	// A key for the pieces other than kings, four bits each in slot order: the team in the table, then the type
+	static String name(int key) {
+		StringBuilder white = new StringBuilder("K");
+		StringBuilder black = new StringBuilder("K");
+
+		for (int shift = 4; shift >= 0; shift -= 4) {
+			int piece = key >>> shift & 0xF;
+
+			if (piece != 0)
+				((piece & 8) == 0 ? white : black).append(LETTERS.charAt(piece & 7));
+		}
+
+		return white + "v" + black;
+	}
+
+	// Reverses name, throwing IllegalArgumentException for a name that isn't a table this class could look up
+	static int materialKey(String name) {
+		int split = name.indexOf('v');
+		int count = name.length() - 1;
+
+		if (split < 1 || split + 1 >= name.length() || name.charAt(0) != 'K' || name.charAt(split + 1) != 'K'
+				|| count > MAX_PIECES)
+			throw new IllegalArgumentException(name + " isn't an endgame of up to " + MAX_PIECES + " pieces");
+
+		int[] types = new int[count];
+		int[] teams = new int[count];
+
+		for (int i = 0, piece = 0; i < name.length(); i++) {
+			if (i == split)
+				continue;
+
+			types[piece] = LETTERS.indexOf(name.charAt(i));
+			teams[piece++] = i < split ? 0 : 1;
+
+			if (types[piece - 1] < PieceType.PAWN)
+				throw new IllegalArgumentException(name + " has an unknown piece");
+		}
+
+		int strong = strongerTeam(count, types, teams);
+		int key = 0;
+
+		for (int slot = 0; slot < 2 * PIECE_ORDER.length; slot++) {
+			int team = slot / PIECE_ORDER.length ^ strong;
+			int type = PIECE_ORDER[slot % PIECE_ORDER.length];
+
+			for (int i = 0; i < count; i++)
+				if (types[i] == type && teams[i] == team)
+					key = key << 4 | (team ^ strong) << 3 | type;
+		}
+
+		if (!name(key).equals(name))
+			throw new IllegalArgumentException(name + " should be written " + name(key));
+
+		return key;
+	}
+
+	// Number of indexes in a table: the side to move, then a square for each piece, kings included
+	static int size(int key) {
+		int count = 2;
+
+		for (; key != 0; key >>>= 4)
+			count++;
+
+		return 2 << (6 * count);
+	}
+
+	Path path(int key) {
+		return directory.resolve(name(key) + EXTENSION);
+	}
+
+	// Maps a table the first time it's needed. Several search threads may map the same table at once, which is
+	// harmless since they map the same file, and the array publishes the mapped buffer to the others safely
+	private ByteBuffer table(int key) {
+		ByteBuffer table = tables.get(key);
+
+		if (table == null) {
+			table = map(key);
+			tables.set(key, table);
+		}
+
+		return table;
+	}
+
+	// Forgets a table that was looked for before it was generated
+	void reload(int key) {
+		tables.set(key, null);
+	}
+
+	// A table that's the wrong size, cut short by a copy that didn't finish say, is treated as missing rather than
+	// read past its end
+	private ByteBuffer map(int key) {
+		Path path = path(key);
+		if (!Files.exists(path))
+			return MISSING;
+
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			if (channel.size() != HEADER_BYTES + size(key))
+				throw new IOException(path + " should be " + (HEADER_BYTES + size(key)) + " bytes");
+
+			ByteBuffer table = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+			if (table.getInt(0) != MAGIC || table.getInt(4) != VERSION)
+				throw new IOException(path + " isn't a tablebase of version " + VERSION);
+
+			return table;
+		} catch (IOException e) {
+			e.printStackTrace();
+			return MISSING;
+		}
+	}
+}
@@ -0,0 +1,565 @@
+package chess;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+
+/*
+ * Generates the tables Tablebase reads by retrograde analysis. First every position is set up once: illegal ones
+ * are marked, mates and stalemates found, captures and promotions looked up in the smaller tables they lead to, and
+ * the other moves counted. Then, a ply at a time, positions lost in n plies make every position that can move into
+ * them won in n + 1, and positions won in n plies count down the moves left to their predecessors, which are lost
+ * once every move is. Predecessors are found by moving pieces backwards, so only positions that change are visited.
+ * Whatever is left over is a draw.
+ * Both passes split the positions between threads, sharing the tables through atomic updates.
+ * Usage: TablebaseGenerator <directory> [endgame ...], for example KQvKR, generating smaller tables it needs first
+ */
+public class TablebaseGenerator {
+	// Every three piece table, and the four piece ones most often reached
+	private static final String[] DEFAULT_ENDGAMES = { "KQvK", "KRvK", "KBvK", "KNvK", "KPvK", "KQvKR", "KRvKP",
+			"KPvKP", "KBNvK" };
+
+	// Positions handed to a thread at a time
+	private static final int CHUNK = 1 << 14;
+
+	private static final int MAX_PLIES = 253;
+
+	private static final VarHandle BYTES = MethodHandles.arrayElementVarHandle(byte[].class);
+
+	private final Tablebase tablebase;
+	private final int threads;
+
+	public TablebaseGenerator(Path directory, int threads) {
+		this.threads = threads;
+		tablebase = new Tablebase(directory);
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length == 0) {
+			System.out.println("Usage: TablebaseGenerator <directory> [endgame ...]");
+			return;
+		}
+
+		Path directory = Paths.get(args[0]);
+		Files.createDirectories(directory);
+
+		TablebaseGenerator generator = new TablebaseGenerator(directory,
+				Runtime.getRuntime().availableProcessors());
+
+		String[] endgames = args.length > 1 ? Arrays.copyOfRange(args, 1, args.length) : DEFAULT_ENDGAMES;
+		for (String endgame : endgames)
+			generator.generate(endgame);
+	}
+
+	// Generates a table unless it's already in the directory, and first any table a capture or promotion leads to
+	public void generate(String name) throws IOException {
+		int key = Tablebase.materialKey(name);
+
+		if (Files.exists(tablebase.path(key)))
+			return;
+
+		for (String smaller : smallerEndgames(key))
+			generate(smaller);
+
+		long start = System.nanoTime();
+		Generation generation = new Generation(key);
+		generation.run();
+		write(tablebase.path(key), generation.values);
+		tablebase.reload(key);
+
+		System.out.printf("%s: %d wins, %d losses, %d draws, longest mate %d plies, %.1f s%n", name, generation.wins,
+				generation.losses, generation.draws, generation.longest, (System.nanoTime() - start) / 1e9);
+	}
+
+	// Endgames one capture or promotion away, other than the two kings alone
+	private static List<String> smallerEndgames(int key) {
+		int[] types = slotTypes(key);
+		int[] teams = slotTeams(key);
+		List<String> smaller = new ArrayList<>();
+
+		for (int slot = 2; slot < types.length; slot++) {
+			if (types.length > 3)
+				smaller.add(nameOf(without(types, slot), teams));
+
+			if (types[slot] == PieceType.PAWN)
+				for (int promotion = PieceType.KNIGHT; promotion <= PieceType.QUEEN; promotion++) {
+					int[] promoted = types.clone();
+					promoted[slot] = promotion;
+					smaller.add(nameOf(promoted, teams));
+
+					// Capturing as it promotes
+					for (int other = 2; other < types.length; other++)
+						if (teams[other] != teams[slot])
+							smaller.add(nameOf(without(promoted, other), teams));
+				}
+		}
+
+		return smaller;
+	}
+
+	private static int[] without(int[] types, int slot) {
+		int[] remaining = types.clone();
+		remaining[slot] = PieceType.NONE;
+
+		return remaining;
+	}
+
+	private static String nameOf(int[] types, int[] teams) {
+		int count = 0;
+		int[] pieceTypes = new int[types.length];
+		int[] pieceTeams = new int[types.length];
+
+		for (int slot = 0; slot < types.length; slot++)
+			if (types[slot] != PieceType.NONE) {
+				pieceTypes[count] = types[slot];
+				pieceTeams[count++] = teams[slot];
+			}
+
+		StringBuilder[] sides = { new StringBuilder("K"), new StringBuilder("K") };
+		int strong = Tablebase.strongerTeam(count, pieceTypes, pieceTeams);
+
+		for (int type : Tablebase.PIECE_ORDER)
+			for (int i = 0; i < count; i++)
+				if (pieceTypes[i] == type)
+					sides[pieceTeams[i] ^ strong].append(" PNBRQK".charAt(type));
+
+		return sides[0] + "v" + sides[1];
+	}
+
+	// Piece type in each slot of a table: the two kings, then the pieces in the key
+	static int[] slotTypes(int key) {
+		int count = key == 0 ? 2 : key < 16 ? 3 : 4;
+		int[] types = new int[count];
+
+		types[0] = PieceType.KING;
+		types[1] = PieceType.KING;
+
+		for (int slot = count - 1, rest = key; slot >= 2; slot--, rest >>>= 4)
+			types[slot] = rest & 7;
+
+		return types;
+	}
+
+	static int[] slotTeams(int key) {
+		int count = key == 0 ? 2 : key < 16 ? 3 : 4;
+		int[] teams = new int[count];
+
+		teams[1] = 1;
+
+		for (int slot = count - 1, rest = key; slot >= 2; slot--, rest >>>= 4)
+			teams[slot] = rest >>> 3 & 1;
+
+		return teams;
+	}
+
+	private static void write(Path path, byte[] values) throws IOException {
+		Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+
+		try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			ByteBuffer header = ByteBuffer.allocate(Tablebase.HEADER_BYTES);
+			header.putInt(Tablebase.MAGIC).putInt(Tablebase.VERSION).flip();
+
+			ByteBuffer body = ByteBuffer.wrap(values);
+
+			while (header.hasRemaining())
+				channel.write(header);
+			while (body.hasRemaining())
+				channel.write(body);
+		}
+
+		// Only a finished table gets the name probes look for
+		Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	// Runs the action on every index below the limit, a chunk at a time on each thread
+	private void parallelFor(int limit, IntConsumer action) {
+		AtomicInteger next = new AtomicInteger();
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		List<Future<?>> workers = new ArrayList<>();
+
+		for (int i = 0; i < threads; i++)
+			workers.add(pool.submit(() -> {
+				for (int start = next.getAndAdd(CHUNK); start < limit; start = next.getAndAdd(CHUNK))
+					for (int index = start; index < Math.min(limit, start + CHUNK); index++)
+						action.accept(index);
+			}));
+
+		try {
+			for (Future<?> worker : workers)
+				worker.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while generating", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Generating failed", e.getCause());
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	// Working state for generating one table
+	private class Generation {
+		private final int[] types;
+		private final int[] teams;
+		private final int count;
+		private final int size;
+
+		// The table being built, coded as Tablebase reads it, 0 until a position is decided
+		private final byte[] values;
+
+		// Moves not yet known to lose, for positions not yet decided
+		private final byte[] movesLeft;
+
+		// Plies to mate from the slowest losing capture, so a position lost through its quiet moves doesn't come out
+		// quicker than that
+		private final byte[] captureLoss;
+
+		// Most plies to mate given to any position so far, passes go on until they reach it
+		private final AtomicInteger highest = new AtomicInteger();
+
+		private long wins, losses, draws;
+		private int longest;
+
+		Generation(int key) {
+			types = slotTypes(key);
+			teams = slotTeams(key);
+			count = types.length;
+			size = Tablebase.size(key);
+			values = new byte[size];
+			movesLeft = new byte[size];
+			captureLoss = new byte[size];
+		}
+
+		void run() {
+			parallelFor(size, this::initialise);
+
+			for (int plies = 0; plies <= highest.get(); plies++) {
+				int decided = plies;
+
+				parallelFor(size, index -> {
+					if ((values[index] & 0xFF) == decided + 1)
+						retract(index, decided);
+				});
+			}
+
+			for (int index = 0; index < size; index++) {
+				int value = values[index] & 0xFF;
+
+				if (value == Tablebase.INVALID)
+					continue;
+				if (value == Tablebase.DRAW)
+					draws++;
+				else if (Tablebase.isWin(value))
+					wins++;
+				else
+					losses++;
+
+				if (value != Tablebase.DRAW)
+					longest = Math.max(longest, Tablebase.plies(value));
+			}
+		}
+
+		// Sets up a position and decides it if it's illegal, finished, or has a capture or promotion that wins
+		private void initialise(int index) {
+			int side = index & 1;
+			int[] squares = decode(index);
+			long occupied = occupancy(squares, -1);
+
+			if (Long.bitCount(occupied) != count || hasPawnOnLastRow(squares)
+					|| isAttacked(squares, -1, squares[1 - side], side, occupied)) {
+				values[index] = (byte) Tablebase.INVALID;
+				return;
+			}
+
+			int quiet = 0, safe = 0, legal = 0;
+			int bestWin = Integer.MAX_VALUE, slowestLoss = 0;
+			int[] childTypes = new int[count];
+			int[] childTeams = new int[count];
+			int[] childSquares = new int[count];
+
+			for (int slot = 0; slot < count; slot++) {
+				if (teams[slot] != side)
+					continue;
+
+				for (long targets = targets(squares, slot, occupied); targets != 0; targets &= targets - 1) {
+					int target = Long.numberOfTrailingZeros(targets);
+					int captured = slotAt(squares, target);
+					int from = squares[slot];
+
+					squares[slot] = target;
+					long after = occupancy(squares, captured);
+					boolean legalMove = !isAttacked(squares, captured, squares[side], 1 - side, after);
+					squares[slot] = from;
+
+					if (!legalMove)
+						continue;
+
+					legal++;
+					boolean promotes = types[slot] == PieceType.PAWN && (target < 8 || target >= 56);
+
+					if (captured < 0 && !promotes) {
+						quiet++;
+						continue;
+					}
+
+					// A capture or promotion leads to another table, try each promotion and keep the best
+					int best = Integer.MIN_VALUE;
+					int first = promotes ? PieceType.KNIGHT : types[slot];
+					int last = promotes ? PieceType.QUEEN : types[slot];
+
+					for (int type = first; type <= last; type++) {
+						int children = 0;
+
+						for (int other = 0; other < count; other++)
+							if (other != captured) {
+								childTypes[children] = other == slot ? type : types[other];
+								childTeams[children] = teams[other];
+								childSquares[children++] = other == slot ? target : squares[other];
+							}
+
+						int child = tablebase.probe(children, childTypes, childTeams, childSquares, 1 - side);
+						if (child == Tablebase.UNKNOWN)
+							throw new IllegalStateException("A table this one needs is missing");
+
+						best = Math.max(best, Tablebase.rank(child));
+					}
+
+					if (best > 0)
+						bestWin = Math.min(bestWin, Tablebase.RANK_BASE - best);
+					else if (best == 0)
+						safe++;
+					else
+						slowestLoss = Math.max(slowestLoss, Tablebase.RANK_BASE + best);
+				}
+			}
+
+			if (legal == 0) {
+				if (isAttacked(squares, -1, squares[side], 1 - side, occupied))
+					decide(index, 0);
+			} else if (bestWin != Integer.MAX_VALUE)
+				decide(index, bestWin);
+			else if (quiet + safe == 0)
+				decide(index, slowestLoss);
+			else {
+				movesLeft[index] = (byte) (quiet + safe);
+				captureLoss[index] = (byte) slowestLoss;
+			}
+		}
+
+		// A position decided at the given number of plies makes its predecessors won, or brings them closer to lost
+		private void retract(int index, int plies) {
+			boolean lost = (plies & 1) == 0;
+			int side = index & 1;
+			int mover = 1 - side;
+			int[] squares = decode(index);
+			long occupied = occupancy(squares, -1);
+
+			for (int slot = 0; slot < count; slot++) {
+				if (teams[slot] != mover)
+					continue;
+
+				int to = squares[slot];
+
+				for (long origins = origins(squares, slot, occupied); origins != 0; origins &= origins - 1) {
+					squares[slot] = Long.numberOfTrailingZeros(origins);
+					int predecessor = encode(squares, mover);
+					squares[slot] = to;
+
+					if ((values[predecessor] & 0xFF) == Tablebase.INVALID)
+						continue;
+
+					if (lost)
+						winIn(predecessor, plies + 1);
+					else if (countDown(predecessor))
+						decide(predecessor, Math.max(plies + 1, captureLoss[predecessor] & 0xFF));
+				}
+			}
+		}
+
+		// Takes one from a position's moves left, returning whether that was the last. A compare and set loop rather
+		// than getAndAdd, since generating KQvK with getAndAdd on OpenJDK 17.0.9 gave a longest mate of 7 plies once
+		// C2 compiled it, against 20 from this loop and from getAndAdd under -Xint or -XX:TieredStopAtLevel=1
+		private boolean countDown(int index) {
+			while (true) {
+				byte left = (byte) BYTES.getVolatile(movesLeft, index);
+
+				if (BYTES.compareAndSet(movesLeft, index, left, (byte) (left - 1)))
+					return left == 1;
+			}
+		}
+
+		// Marks a position won unless it's already won as quickly, or lost
+		private void winIn(int index, int plies) {
+			int value = plies + 1;
+
+			while (true) {
+				int current = (byte) BYTES.getVolatile(values, index) & 0xFF;
+
+				if (current != 0 && current <= value)
+					return;
+				if (BYTES.compareAndSet(values, index, (byte) current, (byte) value))
+					break;
+			}
+
+			highest.accumulateAndGet(plies, Math::max);
+		}
+
+		private void decide(int index, int plies) {
+			if (plies > MAX_PLIES)
+				throw new IllegalStateException("Mate is too far away to store");
+
+			// Only an undecided position can be lost, in case another thread has just found it won
+			if (!BYTES.compareAndSet(values, index, (byte) 0, (byte) (plies + 1)))
+				return;
+
+			highest.accumulateAndGet(plies, Math::max);
+		}
+
+		private int[] decode(int index) {
+			int[] squares = new int[count];
+
+			for (int slot = 0; slot < count; slot++)
+				squares[slot] = index >>> (1 + 6 * slot) & 63;
+
+			return squares;
+		}
+
+		private int encode(int[] squares, int side) {
+			int index = side;
+
+			for (int slot = 0; slot < count; slot++)
+				index |= squares[slot] << (1 + 6 * slot);
+
+			return index;
+		}
+
+		// Squares of every slot but the one left out, -1 to leave none out
+		private long occupancy(int[] squares, int without) {
+			long occupied = 0;
+
+			for (int slot = 0; slot < count; slot++)
+				if (slot != without)
+					occupied |= Bitboards.bit(squares[slot]);
+
+			return occupied;
+		}
+
+		private boolean hasPawnOnLastRow(int[] squares) {
+			for (int slot = 0; slot < count; slot++)
+				if (types[slot] == PieceType.PAWN && (squares[slot] < 8 || squares[slot] >= 56))
+					return true;
+
+			return false;
+		}
+
+		private int slotAt(int[] squares, int square) {
+			for (int slot = 0; slot < count; slot++)
+				if (squares[slot] == square)
+					return slot;
+
+			return -1;
+		}
+
+		// Whether a team's pieces, other than the one captured, attack a square
+		private boolean isAttacked(int[] squares, int captured, int square, int attacker, long occupied) {
+			for (int slot = 0; slot < count; slot++)
+				if (slot != captured && teams[slot] == attacker
+						&& (attacks(types[slot], attacker, squares[slot], occupied) & Bitboards.bit(square)) != 0)
+					return true;
+
+			return false;
+		}
+
+		// Squares a piece can move to, not counting whether its king is left attacked
+		private long targets(int[] squares, int slot, long occupied) {
+			int square = squares[slot];
+			int team = teams[slot];
+			long own = 0;
+
+			for (int other = 0; other < count; other++)
+				if (teams[other] == team)
+					own |= Bitboards.bit(squares[other]);
+
+			if (types[slot] != PieceType.PAWN)
+				return attacks(types[slot], team, square, occupied) & ~own;
+
+			// Kings can't be captured, and positions where one could be are illegal, so captures skip them
+			long enemies = occupied & ~own;
+			long moves = Attacks.pawn(team, square) & enemies;
+			int forward = team == 0 ? 8 : -8;
+			int ahead = square + forward;
+
+			if ((occupied & Bitboards.bit(ahead)) == 0) {
+				moves |= Bitboards.bit(ahead);
+
+				int startRow = team == 0 ? 1 : 6;
+				if (Bitboards.row(square) == startRow && (occupied & Bitboards.bit(ahead + forward)) == 0)
+					moves |= Bitboards.bit(ahead + forward);
+			}
+
+			return moves;
+		}
+
+		// Empty squares a piece could have come from without capturing or promoting
+		private long origins(int[] squares, int slot, long occupied) {
+			int square = squares[slot];
+			int team = teams[slot];
+
+			if (types[slot] != PieceType.PAWN)
+				return attacks(types[slot], team, square, occupied) & ~occupied;
+
+			int backward = team == 0 ? -8 : 8;
+			int behind = square + backward;
+			long origins = 0;
+
+			// A pawn can't have come from its own back row
+			if (behind < 8 || behind >= 56 || (occupied & Bitboards.bit(behind)) != 0)
+				return 0;
+
+			origins |= Bitboards.bit(behind);
+
+			int doubleRow = team == 0 ? 3 : 4;
+			if (Bitboards.row(square) == doubleRow && (occupied & Bitboards.bit(behind + backward)) == 0)
+				origins |= Bitboards.bit(behind + backward);
+
+			return origins;
+		}
+
+		private long attacks(int type, int team, int square, long occupied) {
+			switch (type) {
+
+			case PieceType.PAWN:
+				return Attacks.pawn(team, square);
+			case PieceType.KNIGHT:
+				return Attacks.knight(square);
+			case PieceType.BISHOP:
+				return Attacks.bishop(square, occupied);
+			case PieceType.ROOK:
+				return Attacks.rook(square, occupied);
+			case PieceType.QUEEN:
+				return Attacks.queen(square, occupied);
+			case PieceType.KING:
+				return Attacks.king(square);
+			default:
+				throw new AssertionError("Piece type doesn't seem to match any supported types");
+			}
+		}
+	}
+}
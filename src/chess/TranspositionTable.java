@@ -0,0 +1,137 @@
+package chess;
+
+import java.util.Arrays;
+
+/*
+ * Fixed size hash table of search results, indexed by Zobrist hash. Each entry stores the score,
+ * what kind of bound the score is, the depth it was searched to and the best move found.
+ * A slot is only overwritten by a search at least as deep, unless the entry is left over from an earlier search.
+ *
+ * Several search threads can share a table without locking. The key is stored XORed with the data, so an entry
+ * torn by two threads writing at once no longer matches its hash and is treated as a miss.
+ * The hit, miss and collision counts aren't synchronised either, so they're approximate with more than one thread.
+ */
+class TranspositionTable {
+	static final int EXACT = 0;
+	static final int LOWER_BOUND = 1;
+	static final int UPPER_BOUND = 2;
+
+	// Each entry is a key and a data word
+	private static final int BYTES_PER_ENTRY = 16;
+
+	private final long[] keys;
+	private final long[] data;
+	private final int indexMask;
+
+	// Incremented for every new search so entries from old searches can be replaced
+	private int age;
+
+	private long hits, misses, collisions;
+
+	public TranspositionTable(int megabytes) {
+		long budget = (long) megabytes * 1024 * 1024 / BYTES_PER_ENTRY;
+		int size = Integer.highestOneBit((int) Math.max(1, Math.min(budget, 1 << 30)));
+
+		keys = new long[size];
+		data = new long[size];
+		indexMask = size - 1;
+	}
+
+	// Returns the data word stored for a hash, or 0 if there's no entry for it
+	long probe(long hash) {
+		int index = (int) hash & indexMask;
+		long entry = data[index];
+
+		if ((keys[index] ^ entry) == hash && entry != 0) {
+			hits++;
+			return entry;
+		}
+
+		if (entry == 0)
+			misses++;
+		else
+			collisions++;
+
+		return 0;
+	}
+
+	void store(long hash, int depth, int score, int bound, int move) {
+		int index = (int) hash & indexMask;
+		long existing = data[index];
+		boolean samePosition = (keys[index] ^ existing) == hash;
+
+		if (existing != 0 && ageOf(existing) == age && depthOf(existing) > depth)
+			return;
+
+		// Keep the old best move if this search didn't find one
+		if (move == PackedMove.NONE && samePosition)
+			move = moveOf(existing);
+
+		long entry = pack(depth, score, bound, move);
+		keys[index] = hash ^ entry;
+		data[index] = entry;
+	}
+
+	void newSearch() {
+		age = (age + 1) & 7;
+	}
+
+	void clear() {
+		Arrays.fill(keys, 0);
+		Arrays.fill(data, 0);
+		hits = misses = collisions = 0;
+	}
+
+	// Bits 0-23 hold the move, 24-25 the bound, 26-31 the depth, 32-47 the score and 48-50 the age.
+	// Bit 51 is set for every stored entry so an empty slot can be told apart by being 0
+	private long pack(int depth, int score, int bound, int move) {
+		return move | ((long) bound << 24) | ((long) Math.min(depth, 63) << 26) | ((long) (score & 0xFFFF) << 32)
+				| ((long) age << 48) | (1L << 51);
+	}
+
+	static int moveOf(long entry) {
+		return (int) (entry & 0xFFFFFF);
+	}
+
+	static int boundOf(long entry) {
+		return (int) (entry >>> 24) & 3;
+	}
+
+	static int depthOf(long entry) {
+		return (int) (entry >>> 26) & 63;
+	}
+
+	static int scoreOf(long entry) {
+		return (short) (entry >>> 32);
+	}
+
+	private static int ageOf(long entry) {
+		return (int) (entry >>> 48) & 7;
+	}
+
+	public long getHits() {
+		return hits;
+	}
+
+	public long getMisses() {
+		return misses;
+	}
+
+	// Probes that found a different position in the slot
+	public long getCollisions() {
+		return collisions;
+	}
+
+	public int getSize() {
+		return keys.length;
+	}
+
+	@Override
+	public String toString() {
+		long probes = hits + misses + collisions;
+		double hitRate = probes == 0 ? 0 : 100.0 * hits / probes;
+
+		return String.format("%d entries, %d hits, %d misses, %d collisions (%.1f%% hit rate)", keys.length, hits,
+				misses, collisions, hitRate);
+	}
+}
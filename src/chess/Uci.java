@@ -0,0 +1,404 @@
+package chess;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/*
+ * Runs the engine under the Universal Chess Interface, reading commands from standard input and answering on
+ * standard output, so it can be driven by a chess GUI or tournament manager instead of the Swing front end.
+ * Nothing here touches View, so AWT is never loaded, which keeps startup fast and works on headless servers.
+ * Searches run on the engine's own thread, leaving this one free to answer stop, ponderhit and isready meanwhile.
+ */
+public class Uci {
+	private static final String ENGINE_NAME = "Chess-with-AI";
+	private static final String ENGINE_AUTHOR = "Mark Lee";
+
+	private static final int DEFAULT_HASH_MEGABYTES = 16;
+	private static final int MAX_HASH_MEGABYTES = 1024;
+	private static final int MAX_THREADS = 64;
+
+	// Share of the clock given to one move when the GUI doesn't say how many moves are left until the next control
+	private static final int MOVES_TO_GO_GUESS = 30;
+
+	// Kept back from the clock for the time it takes the move to reach the GUI
+	private static final int MOVE_OVERHEAD_MILLIS = 50;
+
+	private final BufferedReader in;
+	private final PrintStream out;
+
+	// The position set by the last position command
+	private final Board board = new Board();
+
+	private final MinimaxAI ai;
+	private int hashMegabytes = DEFAULT_HASH_MEGABYTES;
+	private int threads = 1;
+	private OpeningBook book;
+	private Tablebase tablebase;
+
+	// Guarded by this. While searching in infinite or ponder mode the best move is held back until stop or
+	// ponderhit, as the protocol requires. A search is thinking until it has its best move, whether or not it's held
+	private CompletableFuture<SearchResult> search;
+	private boolean searching;
+	private boolean thinking;
+	private boolean holdingBestMove;
+	private SearchResult heldResult;
+
+	// Time the current ponder search gets once the opponent plays the move it's pondering on, null for no limit
+	private Duration ponderTimeLimit;
+
+	public Uci(BufferedReader in, PrintStream out) {
+		this.in = in;
+		this.out = out;
+		ai = new MinimaxAI(MinimaxAI.MAX_DEPTH, Team.WHITE, hashMegabytes);
+	}
+
+	public static void main(String[] args) throws IOException {
+		new Uci(new BufferedReader(new InputStreamReader(System.in)), System.out).run();
+	}
+
+	// Answers commands until quit or the end of the input
+	public void run() throws IOException {
+		for (String line = in.readLine(); line != null; line = in.readLine()) {
+			String[] words = line.trim().split("\\s+");
+
+			try {
+				if (!execute(words))
+					break;
+			} catch (IllegalArgumentException e) {
+				send("info string " + e.getMessage());
+			}
+		}
+
+		stopSearch();
+	}
+
+	// Carries out one command, returning false for quit
+	private boolean execute(String[] words) {
+		switch (words[0]) {
+
+		case "uci":
+			send("id name " + ENGINE_NAME);
+			send("id author " + ENGINE_AUTHOR);
+			send("option name Hash type spin default " + DEFAULT_HASH_MEGABYTES + " min 1 max " + MAX_HASH_MEGABYTES);
+			send("option name Threads type spin default 1 min 1 max " + MAX_THREADS);
+			send("option name Ponder type check default false");
+			send("option name BookFile type string default <empty>");
+			send("option name TablebasePath type string default <empty>");
+			send("uciok");
+			break;
+		case "isready":
+			send("readyok");
+			break;
+		case "setoption":
+			stopSearch();
+			setOption(words);
+			break;
+		case "ucinewgame":
+			stopSearch();
+			ai.getTranspositionTable().clear();
+			break;
+		case "position":
+			stopSearch();
+			setPosition(words);
+			break;
+		case "go":
+			stopSearch();
+			go(words);
+			break;
+		case "stop":
+			stopSearch();
+			break;
+		case "ponderhit":
+			ponderHit();
+			break;
+		case "quit":
+			return false;
+		default:
+			// The protocol says unknown commands are ignored, debug and register included
+		}
+
+		return true;
+	}
+
+	// setoption name <name> value <value>
+	private void setOption(String[] words) {
+		String value = "";
+		if (words.length >= 5 && words[3].equals("value"))
+			value = String.join(" ", Arrays.asList(words).subList(4, words.length));
+
+		switch (words.length >= 3 ? words[2] : "") {
+
+		case "Hash":
+			hashMegabytes = Math.max(1, Math.min(parseNumber(value), MAX_HASH_MEGABYTES));
+			ai.setHashSize(hashMegabytes);
+			break;
+		case "Threads":
+			threads = Math.max(1, Math.min(parseNumber(value), MAX_THREADS));
+			ai.setThreads(threads);
+			break;
+		case "BookFile":
+			book = openBook(value);
+			ai.setOpeningBook(book);
+			break;
+		case "TablebasePath":
+			tablebase = openTablebase(value);
+			ai.setTablebase(tablebase);
+			break;
+		case "Ponder":
+			// Pondering is up to the GUI, which sends go ponder when it wants it
+			break;
+		default:
+			throw new IllegalArgumentException("Unknown option " + (words.length >= 3 ? words[2] : ""));
+		}
+	}
+
+	// An empty name or <empty> turns the book off
+	private OpeningBook openBook(String file) {
+		if (file.isEmpty() || file.equals("<empty>"))
+			return null;
+
+		try {
+			return OpeningBook.open(Paths.get(file));
+		} catch (IOException e) {
+			throw new IllegalArgumentException("Can't open book " + file + ", " + e.getMessage());
+		}
+	}
+
+	// A directory of tables from TablebaseGenerator, empty or <empty> for none
+	private static Tablebase openTablebase(String directory) {
+		if (directory.isEmpty() || directory.equals("<empty>"))
+			return null;
+
+		if (!Files.isDirectory(Paths.get(directory)))
+			throw new IllegalArgumentException("No tablebase directory " + directory);
+
+		return new Tablebase(Paths.get(directory));
+	}
+
+	// position startpos [moves ...] or position fen <fen> [moves ...]
+	private void setPosition(String[] words) {
+		int i = 1;
+
+		if (words.length > 1 && words[1].equals("startpos")) {
+			board.loadFen(Fen.START_POSITION);
+			i = 2;
+		} else if (words.length > 1 && words[1].equals("fen")) {
+			StringBuilder fen = new StringBuilder();
+
+			for (i = 2; i < words.length && !words[i].equals("moves"); i++)
+				fen.append(words[i]).append(' ');
+
+			board.loadFen(fen.toString().trim());
+		} else
+			throw new IllegalArgumentException("position needs startpos or fen");
+
+		if (i < words.length && words[i].equals("moves"))
+			for (i++; i < words.length; i++)
+				board.makeMove(parseMove(words[i]));
+	}
+
+	// Finds the legal move written in coordinates, "e2e4" or "e7e8q"
+	private int parseMove(String text) {
+		int[] moves = new int[PackedMove.MAX_MOVES];
+		int count = board.generateMoves(board.getSideToMove(), moves);
+
+		for (int i = 0; i < count; i++)
+			if (PackedMove.toCoordinates(moves[i]).equals(text))
+				return moves[i];
+
+		throw new IllegalArgumentException("Illegal move " + text + " in " + board.toFen());
+	}
+
+	// go [ponder] [wtime n] [btime n] [winc n] [binc n] [movestogo n] [depth n] [nodes n] [movetime n] [infinite]
+	private void go(String[] words) {
+		boolean white = board.getSideToMove() == Team.WHITE;
+		long time = -1, increment = 0, movesToGo = MOVES_TO_GO_GUESS, moveTime = -1, nodes = 0;
+		int depth = MinimaxAI.MAX_DEPTH;
+		boolean infinite = false, ponder = false;
+
+		for (int i = 1; i < words.length; i++) {
+			boolean hasValue = i + 1 < words.length;
+
+			switch (words[i]) {
+
+			case "wtime":
+			case "btime":
+				if (hasValue && words[i].equals(white ? "wtime" : "btime"))
+					time = parseNumber(words[i + 1]);
+				break;
+			case "winc":
+			case "binc":
+				if (hasValue && words[i].equals(white ? "winc" : "binc"))
+					increment = parseNumber(words[i + 1]);
+				break;
+			case "movestogo":
+				if (hasValue)
+					movesToGo = Math.max(1, parseNumber(words[i + 1]));
+				break;
+			case "depth":
+				if (hasValue)
+					depth = Math.max(1, Math.min(parseNumber(words[i + 1]), MinimaxAI.MAX_DEPTH));
+				break;
+			case "nodes":
+				if (hasValue)
+					nodes = parseNumber(words[i + 1]);
+				break;
+			case "movetime":
+				if (hasValue)
+					moveTime = parseNumber(words[i + 1]);
+				break;
+			case "infinite":
+				infinite = true;
+				break;
+			case "ponder":
+				ponder = true;
+				break;
+			default:
+				// Values, and searchmoves and mate which aren't supported
+			}
+		}
+
+		Duration timeLimit = null;
+		if (moveTime >= 0)
+			timeLimit = Duration.ofMillis(Math.max(1, moveTime - MOVE_OVERHEAD_MILLIS));
+		else if (time >= 0)
+			timeLimit = Duration.ofMillis(timeForMove(time, increment, movesToGo));
+
+		if (infinite)
+			timeLimit = null;
+
+		startSearch(depth, nodes, ponder ? null : timeLimit, ponder ? timeLimit : null, infinite || ponder);
+	}
+
+	// Spends an even share of the clock over the moves left until the next time control, plus most of the increment
+	private static long timeForMove(long time, long increment, long movesToGo) {
+		long share = time / movesToGo + increment * 3 / 4;
+
+		return Math.max(1, Math.min(share, time - MOVE_OVERHEAD_MILLIS));
+	}
+
+	// The search is submitted from this thread, so a stop or ponderhit read right after go can't come too early
+	private synchronized void startSearch(int depth, long nodes, Duration timeLimit, Duration ponderLimit,
+			boolean holdBestMove) {
+		ai.setTeam(board.getSideToMove());
+		ai.setNodeLimit(nodes);
+
+		ponderTimeLimit = ponderLimit;
+		holdingBestMove = holdBestMove;
+		heldResult = null;
+		searching = true;
+		thinking = true;
+
+		search = ai.searchAsync(board, depth, timeLimit, this::sendInfo).whenComplete(this::finishSearch);
+	}
+
+	// The opponent played the move being pondered on, so the ponder search carries on as the real one
+	private synchronized void ponderHit() {
+		if (!searching)
+			return;
+
+		if (ponderTimeLimit != null)
+			ai.setTimeLimit(ponderTimeLimit);
+
+		ponderTimeLimit = null;
+		releaseBestMove();
+	}
+
+	// Ends any search and waits for it to send its best move. Commands that change the position or engine do this
+	// first, so a GUI that doesn't send stop can't leave a search running on the old position
+	private void stopSearch() {
+		CompletableFuture<SearchResult> finishing;
+
+		synchronized (this) {
+			if (thinking)
+				ai.stop();
+
+			releaseBestMove();
+			finishing = search;
+		}
+
+		if (finishing == null)
+			return;
+
+		try {
+			finishing.join();
+		} catch (CompletionException | CancellationException e) {
+			// Already reported by finishSearch
+		}
+	}
+
+	// Runs on the search thread when it's done, holding the best move back if the search is still meant to be going
+	private synchronized void finishSearch(SearchResult result, Throwable error) {
+		thinking = false;
+
+		if (error != null)
+			send("info string Search failed, " + error);
+
+		if (holdingBestMove)
+			heldResult = result;
+		else
+			sendBestMove(result);
+	}
+
+	// A search that finished while holding its best move back sends it now
+	private synchronized void releaseBestMove() {
+		holdingBestMove = false;
+
+		if (searching && !thinking)
+			sendBestMove(heldResult);
+	}
+
+	private synchronized void sendBestMove(SearchResult result) {
+		int[] line = result == null ? new int[0] : result.getPackedPrincipalVariation();
+
+		if (line.length == 0)
+			send("bestmove 0000");
+		else if (line.length == 1)
+			send("bestmove " + PackedMove.toCoordinates(line[0]));
+		else
+			send("bestmove " + PackedMove.toCoordinates(line[0]) + " ponder " + PackedMove.toCoordinates(line[1]));
+
+		searching = false;
+		heldResult = null;
+		search = null;
+	}
+
+	private void sendInfo(SearchResult result) {
+		StringBuilder info = new StringBuilder("info depth ").append(result.getDepth());
+
+		if (result.getMateIn() != 0)
+			info.append(" score mate ").append(result.getMateIn());
+		else
+			info.append(" score cp ").append(result.getScore());
+
+		info.append(" nodes ").append(result.getNodes()).append(" nps ").append(result.getNodesPerSecond())
+				.append(" time ").append(result.getTimeMillis()).append(" pv");
+
+		for (int move : result.getPackedPrincipalVariation())
+			info.append(' ').append(PackedMove.toCoordinates(move));
+
+		send(info.toString());
+	}
+
+	private synchronized void send(String line) {
+		out.println(line);
+		out.flush();
+	}
+
+	private static int parseNumber(String text) {
+		try {
+			return (int) Math.min(Long.parseLong(text), Integer.MAX_VALUE);
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Expected a number but got " + text);
+		}
+	}
+}
@@ -23,6 +23,7 @@ import javax.swing.JMenuItem;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.JTextField;
+import javax.swing.SwingUtilities;
 import javax.swing.filechooser.FileSystemView;
 
 public class View extends Observable {
@@ -144,6 +145,12 @@ public class View extends Observable {
 	public void gameOverMessage(GameStatus status, Team team) {
 		if (status == GameStatus.STALEMATE)
 			JOptionPane.showMessageDialog(null, "Game has ended in a stalemate");
+		else if (status == GameStatus.REPETITION)
+			JOptionPane.showMessageDialog(null, "Game is drawn, the same position came up three times");
+		else if (status == GameStatus.FIFTY_MOVES)
+			JOptionPane.showMessageDialog(null, "Game is drawn, fifty moves passed without a capture or pawn move");
+		else if (status == GameStatus.INSUFFICIENT_MATERIAL)
+			JOptionPane.showMessageDialog(null, "Game is drawn, neither side has enough pieces left to checkmate");
 		else
 			JOptionPane.showMessageDialog(null, "Checkmate, " + Team.toString(Team.otherTeam(team)) + " has won");
 	}
@@ -166,6 +173,13 @@ public class View extends Observable {
 		gameStatus.setText(move.toString());
 	}
 
+	// Shows how far the AI has got while it's thinking. Called from the search thread, so the text is set later
+	// on the Swing thread
+	public void thinkingMessage(SearchResult progress) {
+		String text = "Thinking, depth " + progress.getDepth() + ", best so far " + progress.getBestMove();
+		SwingUtilities.invokeLater(() -> gameStatus.setText(text));
+	}
+
 	public void checkMessage(Team team) {
 		gameStatus.setText(Team.toString(team) + " would be checked as the result of that move");
 	}
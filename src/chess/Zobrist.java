@@ -0,0 +1,77 @@
+package chess;
+
+/*
+ * Random keys used to hash positions. A position's hash is the XOR of the key for every piece on
+ * every square, plus the side key when black is to move, a key for the castling rights held and one for the column
+ * of any en passant square, so Board can update it a piece at a time.
+ */
+final class Zobrist {
+	private static final long[][][] PIECE_KEYS = new long[2][PieceType.COUNT][64];
+	static final long SIDE_KEY;
+
+	// Indexed by every combination of castling rights, each the XOR of the keys for the rights it holds
+	private static final long[] CASTLING_KEYS = new long[16];
+
+	// Indexed by the en passant square plus one, 0 meaning none and having no key, so clearing it doesn't have to
+	// check whether there is one. Every square on a column shares the column's key
+	private static final long[] EN_PASSANT_KEYS = new long[65];
+
+	static {
+		// Fixed seed so hashes stay the same between runs, which opening books rely on
+		long seed = 0x2545F4914F6CDD1DL;
+
+		for (int team = 0; team < 2; team++)
+			for (int type = PieceType.PAWN; type <= PieceType.KING; type++)
+				for (int square = 0; square < 64; square++) {
+					seed = next(seed);
+					PIECE_KEYS[team][type][square] = scramble(seed);
+				}
+
+		seed = next(seed);
+		SIDE_KEY = scramble(seed);
+
+		// Drawn after the keys above, so adding them didn't change those
+		for (int right = 1; right < CASTLING_KEYS.length; right <<= 1) {
+			seed = next(seed);
+			CASTLING_KEYS[right] = scramble(seed);
+		}
+
+		for (int rights = 1; rights < CASTLING_KEYS.length; rights++)
+			CASTLING_KEYS[rights] = CASTLING_KEYS[rights & -rights] ^ CASTLING_KEYS[rights & (rights - 1)];
+
+		for (int column = 0; column < 8; column++) {
+			seed = next(seed);
+
+			for (int square = column; square < 64; square += 8)
+				EN_PASSANT_KEYS[square + 1] = scramble(seed);
+		}
+	}
+
+	private Zobrist() {
+	}
+
+	static long pieceKey(int team, int type, int square) {
+		return PIECE_KEYS[team][type][square];
+	}
+
+	// The keys of two sets of rights XORed together are the key of the rights in one but not the other
+	static long castlingKey(int rights) {
+		return CASTLING_KEYS[rights];
+	}
+
+	// 0 for no square, -1
+	static long enPassantKey(int square) {
+		return EN_PASSANT_KEYS[square + 1];
+	}
+
+	private static long next(long seed) {
+		seed ^= seed >>> 12;
+		seed ^= seed << 25;
+		seed ^= seed >>> 27;
+		return seed;
+	}
+
+	private static long scramble(long seed) {
+		return seed * 2685821657736338717L;
+	}
+}